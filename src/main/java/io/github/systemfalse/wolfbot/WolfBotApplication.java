@@ -23,6 +23,8 @@
 package io.github.systemfalse.wolfbot;
 
 import io.github.systemfalse.wolfbot.bot.TelegramBot;
+import io.github.systemfalse.wolfbot.bot.WebhookServer;
+import io.github.systemfalse.wolfbot.config.BotConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
@@ -34,6 +36,8 @@ import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import java.io.IOException;
+
 @SpringBootApplication
 @EnableScheduling
 @RequiredArgsConstructor
@@ -41,6 +45,8 @@ import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 public class WolfBotApplication {
 
     private final TelegramBot telegramBot;
+    private final WebhookServer webhookServer;
+    private final BotConfig botConfig;
 
     public static void main(String[] args) {
         SpringApplication.run(WolfBotApplication.class, args);
@@ -51,11 +57,15 @@ public class WolfBotApplication {
         return args -> {
             try {
                 telegramBot.init();
-                TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-                botsApi.registerBot(telegramBot);
-                log.info("Telegram bot was successfully registered and launched!");
+                if (botConfig.getMode() == BotConfig.UpdateMode.WEBHOOK) {
+                    webhookServer.start();
+                } else {
+                    TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
+                    botsApi.registerBot(telegramBot);
+                }
+                log.info("Telegram bot was successfully registered and launched! Mode: {}", botConfig.getMode());
                 log.info("Bot username: {}", telegramBot.getBotUsername());
-            } catch (TelegramApiException e) {
+            } catch (TelegramApiException | IOException e) {
                 log.error("An error during telegram bot registration: ", e);
                 throw new RuntimeException("Failed to launch the bot", e);
             }
@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.bot;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Очередь исходящих запросов к Telegram API.
+ * <p>
+ * Соблюдает глобальное ограничение бота, ограничения на отдельный чат и группу,
+ * учитывает {@code retry_after} из ответов 429. Запросы одного чата выполняются по порядку.
+ * Интерактивные запросы обслуживаются раньше массовых, а массовым запросам доступна
+ * только часть глобального лимита и одновременных соединений
+ */
+@Component
+@Slf4j
+public class OutboundQueue {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final BotConfig.Outbound config;
+    private final long shutdownTimeoutSeconds;
+    private final SendLimits limits;
+    private final ConcurrentHashMap<Long, ChatLane> lanes = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatLane> interactiveReady = new DelayQueue<>();
+    private final DelayQueue<ChatLane> bulkReady = new DelayQueue<>();
+    private final Semaphore inFlight;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public OutboundQueue(BotConfig botConfig) {
+        this.config = botConfig.getOutbound();
+        this.shutdownTimeoutSeconds = botConfig.getMessageTimeout();
+        this.limits = new SendLimits(config, System.nanoTime());
+        this.inFlight = new Semaphore(config.getMaxConcurrentRequests());
+        this.worker = new Thread(this::runWorker, "telegram-outbound");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Вызов Telegram API
+     */
+    @FunctionalInterface
+    public interface ApiCall<T> {
+        T call() throws TelegramApiException;
+    }
+
+    /**
+     * Поставить запрос в очередь
+     *
+     * @param chatId   чат, к которому относится запрос, или null для запросов вне чата
+     * @param priority приоритет запроса
+     */
+    public <T> CompletableFuture<T> submit(Long chatId, SendPriority priority, ApiCall<T> call) {
+        Task<T> task = new Task<>(call, priority);
+        pending.incrementAndGet();
+        task.future.whenComplete((result, error) -> pending.decrementAndGet());
+
+        if (!running) {
+            task.future.completeExceptionally(new IllegalStateException("Очередь отправки остановлена"));
+            return task.future;
+        }
+
+        if (chatId == null) {
+            // Запросы без чата ограничены только глобальным лимитом
+            ChatLane lane = new ChatLane(null, null);
+            synchronized (lane) {
+                lane.add(task);
+                schedule(lane, System.nanoTime());
+            }
+            return task.future;
+        }
+
+        while (true) {
+            ChatLane lane = lanes.computeIfAbsent(chatId, id -> new ChatLane(id, createChatBucket(id)));
+            synchronized (lane) {
+                if (lane.closed) {
+                    continue;
+                }
+                lane.add(task);
+                if (!lane.scheduled) {
+                    schedule(lane, System.nanoTime());
+                } else if (priority == SendPriority.INTERACTIVE && lane.queuedIn == bulkReady
+                        && bulkReady.remove(lane)) {
+                    // Чат ждет в массовой очереди: переносим его в интерактивную
+                    lane.queuedIn = interactiveReady;
+                    interactiveReady.add(lane);
+                    LockSupport.unpark(worker);
+                }
+            }
+            return task.future;
+        }
+    }
+
+    /**
+     * Количество запросов, ожидающих отправки или выполняющихся
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private TokenBucket createChatBucket(long chatId) {
+        // Отрицательные ID принадлежат группам и каналам
+        if (chatId < 0) {
+            return new TokenBucket(config.getChatBurst(), config.getGroupPerMinute() / 60d);
+        }
+        return new TokenBucket(config.getChatBurst(), config.getChatPerSecond());
+    }
+
+    /**
+     * Поставить чат в очередь готовности (вызывается под блокировкой чата)
+     */
+    private void schedule(ChatLane lane, long readyAt) {
+        lane.scheduled = true;
+        lane.readyAt = Math.max(readyAt, lane.blockedUntil);
+        lane.queuedIn = lane.hasInteractive() ? interactiveReady : bulkReady;
+        lane.queuedIn.add(lane);
+        LockSupport.unpark(worker);
+    }
+
+    private void runWorker() {
+        while (running) {
+            try {
+                // Интерактивные запросы всегда выбираются первыми
+                ChatLane lane = interactiveReady.poll();
+                if (lane == null) {
+                    lane = bulkReady.poll();
+                }
+                if (lane == null) {
+                    LockSupport.parkNanos(this, nextWakeUpNanos());
+                    continue;
+                }
+                dispatch(lane);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Ошибка в очереди исходящих сообщений: ", e);
+            }
+        }
+    }
+
+    /**
+     * Время до готовности ближайшего чата
+     */
+    private long nextWakeUpNanos() {
+        long wait = MAX_IDLE_PARK_NANOS;
+        ChatLane head = interactiveReady.peek();
+        if (head != null) {
+            wait = Math.min(wait, head.getDelay(TimeUnit.NANOSECONDS));
+        }
+        head = bulkReady.peek();
+        if (head != null) {
+            wait = Math.min(wait, head.getDelay(TimeUnit.NANOSECONDS));
+        }
+        return Math.max(wait, 1);
+    }
+
+    /**
+     * Отправить очередной запрос готового чата
+     */
+    private void dispatch(ChatLane lane) throws InterruptedException {
+        Task<?> task;
+        boolean bulk;
+        synchronized (lane) {
+            Task<?> next = lane.peek();
+            if (next == null) {
+                finish(lane);
+                return;
+            }
+            // Приоритет берется у запроса, который будет отправлен: проверка и выборка под одной блокировкой
+            bulk = next.priority != SendPriority.INTERACTIVE;
+
+            // Если не пропускает хотя бы одно ограничение, возвращаем чат в очередь до его снятия
+            long now = System.nanoTime();
+            long wait = limits.tryAcquire(lane.bucket, bulk, now);
+            if (wait > 0) {
+                schedule(lane, now + wait);
+                return;
+            }
+            task = lane.poll();
+        }
+
+        inFlight.acquire();
+        senders.execute(() -> send(lane, task, bulk));
+    }
+
+    /**
+     * Выполнить запрос и обработать ошибки ограничения частоты
+     */
+    private <T> void send(ChatLane lane, Task<T> task, boolean bulkSlot) {
+        try {
+            task.future.complete(task.call.call());
+        } catch (TelegramApiRequestException e) {
+            if (!retry(lane, task, e)) {
+                task.future.completeExceptionally(e);
+            }
+        } catch (Exception e) {
+            task.future.completeExceptionally(e);
+        } finally {
+            inFlight.release();
+            if (bulkSlot) {
+                limits.releaseBulkSlot();
+            }
+            finish(lane);
+        }
+    }
+
+    /**
+     * Повторить запрос после 429 или ошибки сервера Telegram
+     */
+    private boolean retry(ChatLane lane, Task<?> task, TelegramApiRequestException e) {
+        Integer errorCode = e.getErrorCode();
+        if (errorCode == null || task.attempts >= config.getMaxRetries()
+                || (errorCode != TOO_MANY_REQUESTS && errorCode < 500)) {
+            return false;
+        }
+
+        task.attempts++;
+        long delaySeconds;
+        if (errorCode == TOO_MANY_REQUESTS && e.getParameters() != null
+                && e.getParameters().getRetryAfter() != null) {
+            delaySeconds = e.getParameters().getRetryAfter();
+        } else {
+            delaySeconds = task.attempts;
+        }
+
+        log.warn("Telegram API вернул {} для чата {}, повтор через {} с (попытка {})",
+                errorCode, lane.chatId, delaySeconds, task.attempts);
+
+        synchronized (lane) {
+            lane.blockedUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(delaySeconds);
+            lane.addFirst(task);
+        }
+        return true;
+    }
+
+    /**
+     * Завершить обработку запроса чата и поставить следующий запрос в очередь
+     */
+    private void finish(ChatLane lane) {
+        synchronized (lane) {
+            if (lane.isEmpty()) {
+                lane.scheduled = false;
+                lane.queuedIn = null;
+            } else {
+                schedule(lane, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Удалить простаивающие чаты, для которых ограничение частоты уже не действует
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleLanes() {
+        long now = System.nanoTime();
+        lanes.values().removeIf(lane -> {
+            synchronized (lane) {
+                if (!lane.scheduled && lane.isEmpty()
+                        && now >= lane.blockedUntil && lane.bucket.isFull(now)) {
+                    lane.closed = true;
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownTimeoutSeconds);
+        while (pending.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        if (pending.get() > 0) {
+            log.warn("Очередь отправки остановлена, не отправлено запросов: {}", pending.get());
+        }
+        running = false;
+        LockSupport.unpark(worker);
+        senders.shutdown();
+    }
+
+    /**
+     * Запрос в очереди
+     */
+    private static final class Task<T> {
+        final ApiCall<T> call;
+        final SendPriority priority;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        int attempts;
+
+        Task(ApiCall<T> call, SendPriority priority) {
+            this.call = call;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Очередь запросов одного чата
+     */
+    private static final class ChatLane implements Delayed {
+        final Long chatId;
+        final TokenBucket bucket;
+        final ArrayDeque<Task<?>> interactive = new ArrayDeque<>();
+        final ArrayDeque<Task<?>> bulk = new ArrayDeque<>();
+        volatile long readyAt;
+        long blockedUntil;
+        boolean scheduled;
+        boolean closed;
+        DelayQueue<ChatLane> queuedIn;
+
+        ChatLane(Long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+            this.blockedUntil = System.nanoTime();
+        }
+
+        void add(Task<?> task) {
+            (task.priority == SendPriority.INTERACTIVE ? interactive : bulk).addLast(task);
+        }
+
+        void addFirst(Task<?> task) {
+            (task.priority == SendPriority.INTERACTIVE ? interactive : bulk).addFirst(task);
+        }
+
+        Task<?> peek() {
+            Task<?> task = interactive.peekFirst();
+            return task != null ? task : bulk.peekFirst();
+        }
+
+        Task<?> poll() {
+            Task<?> task = interactive.pollFirst();
+            return task != null ? task : bulk.pollFirst();
+        }
+
+        boolean hasInteractive() {
+            return !interactive.isEmpty();
+        }
+
+        boolean isEmpty() {
+            return interactive.isEmpty() && bulk.isEmpty();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAt, ((ChatLane) other).readyAt);
+        }
+    }
+}
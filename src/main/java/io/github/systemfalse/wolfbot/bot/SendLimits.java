@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничения частоты, общие для всех чатов: глобальный лимит бота и доля массовых запросов
+ * в лимите и одновременных соединениях.
+ * Токены списываются, только если запрос пропускают все ограничения сразу,
+ * поэтому отказ одного ограничения не расходует остальные
+ */
+final class SendLimits {
+
+    static final long BULK_SLOT_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final TokenBucket globalBucket;
+    private final TokenBucket bulkBucket;
+    private final Semaphore bulkInFlight;
+
+    SendLimits(BotConfig.Outbound config, long now) {
+        this.globalBucket = new TokenBucket(config.getGlobalPerSecond(), config.getGlobalPerSecond(), now);
+        double bulkRate = config.getGlobalPerSecond() * config.getBulkShare();
+        this.bulkBucket = new TokenBucket(Math.max(1, bulkRate), bulkRate, now);
+        this.bulkInFlight = new Semaphore(Math.max(1,
+                (int) (config.getMaxConcurrentRequests() * config.getBulkShare())));
+    }
+
+    /**
+     * Списать токены глобального лимита, лимита чата и, для массового запроса, массового лимита
+     * вместе со слотом соединения.
+     *
+     * @param chatBucket лимит чата или null для запросов вне чата
+     * @return 0, если все токены списаны, иначе время ожидания в наносекундах; в этом случае ничего не списано
+     */
+    synchronized long tryAcquire(TokenBucket chatBucket, boolean bulk, long now) {
+        long wait = globalBucket.waitTime(now);
+        if (chatBucket != null) {
+            wait = Math.max(wait, chatBucket.waitTime(now));
+        }
+        if (bulk) {
+            wait = Math.max(wait, bulkBucket.waitTime(now));
+            if (wait == 0 && bulkInFlight.availablePermits() == 0) {
+                wait = BULK_SLOT_RETRY_NANOS;
+            }
+        }
+        if (wait > 0) {
+            return wait;
+        }
+
+        // Все ограничения пропускают запрос: токены есть, а берет их только этот метод
+        globalBucket.tryAcquire(now);
+        if (chatBucket != null) {
+            chatBucket.tryAcquire(now);
+        }
+        if (bulk) {
+            bulkBucket.tryAcquire(now);
+            bulkInFlight.acquireUninterruptibly();
+        }
+        return 0;
+    }
+
+    /**
+     * Освободить слот соединения массового запроса
+     */
+    void releaseBulkSlot() {
+        bulkInFlight.release();
+    }
+}
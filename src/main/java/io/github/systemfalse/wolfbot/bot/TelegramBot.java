@@ -25,27 +25,61 @@ package io.github.systemfalse.wolfbot.bot;
 import io.github.systemfalse.wolfbot.bot.handlers.CallbackHandler;
 import io.github.systemfalse.wolfbot.bot.handlers.MessageHandler;
 import io.github.systemfalse.wolfbot.bot.handlers.PhotoHandler;
+import io.github.systemfalse.wolfbot.bot.transport.TelegramTransport;
 import io.github.systemfalse.wolfbot.config.BotConfig;
 import io.github.systemfalse.wolfbot.service.UserService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class TelegramBot extends TelegramLongPollingBot {
 
+    // Фрагменты описания ошибки, с которыми Telegram отклоняет недействительный file_id
+    private static final List<String> FILE_ID_ERRORS =
+            List.of("wrong file identifier", "wrong remote file", "wrong file_id", "file reference", "file_reference");
+
     private final BotConfig botConfig;
     private final UserService userService;
     private final MessageHandler messageHandler;
     private final PhotoHandler photoHandler;
     private final CallbackHandler callbackHandler;
+    private final UpdateDispatcher updateDispatcher;
+    private final UpdateDeduplicator updateDeduplicator;
+    private final OutboundQueue outboundQueue;
+
+    public TelegramBot(BotConfig botConfig, TelegramTransport transport, UserService userService,
+                       MessageHandler messageHandler, PhotoHandler photoHandler, CallbackHandler callbackHandler,
+                       UpdateDispatcher updateDispatcher, UpdateDeduplicator updateDeduplicator,
+                       OutboundQueue outboundQueue) {
+        super(transport.createBotOptions(), botConfig.getToken());
+        this.botConfig = botConfig;
+        this.userService = userService;
+        this.messageHandler = messageHandler;
+        this.photoHandler = photoHandler;
+        this.callbackHandler = callbackHandler;
+        this.updateDispatcher = updateDispatcher;
+        this.updateDeduplicator = updateDeduplicator;
+        this.outboundQueue = outboundQueue;
+    }
 
     public void init() {
         messageHandler.initBot(this);
@@ -65,6 +99,57 @@ public class TelegramBot extends TelegramLongPollingBot {
 
     @Override
     public void onUpdateReceived(Update update) {
+        // Повторно доставленные обновления не должны повторно создавать изображения и рассылки модераторам
+        if (!updateDeduplicator.markReceived(update.getUpdateId())) {
+            return;
+        }
+        // Отброшенное или прерванное обновление тоже завершено: после повторной доставки оно не будет обработано
+        updateDispatcher.dispatch(update, getPriority(update), this::processUpdate, this::replyBusy,
+                done -> updateDeduplicator.markFinished(done.getUpdateId()));
+    }
+
+    /**
+     * Определить ценность обновления для диспетчера
+     */
+    private UpdatePriority getPriority(Update update) {
+        if (update.hasCallbackQuery()) {
+            return UpdatePriority.HIGH;
+        }
+        if (update.hasMessage()) {
+            Message message = update.getMessage();
+            if (message.hasPhoto()) {
+                return UpdatePriority.HIGH;
+            }
+            if (message.hasText() && MessageHandler.isKnownCommand(message.getText())) {
+                return UpdatePriority.NORMAL;
+            }
+        }
+        return UpdatePriority.LOW;
+    }
+
+    /**
+     * Ответ на обновление, отброшенное из-за перегрузки. Не обращается к БД
+     */
+    private void replyBusy(Update update) {
+        if (update.hasCallbackQuery()) {
+            AnswerCallbackQuery answer = AnswerCallbackQuery.builder()
+                    .callbackQueryId(update.getCallbackQuery().getId())
+                    .text("⏳ Бот перегружен, попробуйте позже")
+                    .build();
+            enqueue(null, answer).exceptionally(e -> {
+                log.warn("Не удалось ответить на callback при перегрузке: {}", e.getMessage());
+                return null;
+            });
+        } else if (update.hasMessage()) {
+            sendTextMessage(update.getMessage().getChatId(),
+                    "⏳ Бот сейчас перегружен. Пожалуйста, повторите запрос через минуту.");
+        }
+    }
+
+    /**
+     * Обработка обновления (выполняется диспетчером)
+     */
+    private void processUpdate(Update update) {
         try {
             // Обработка сообщений с текстом
             if (update.hasMessage() && update.getMessage().hasText()) {
@@ -93,37 +178,118 @@ public class TelegramBot extends TelegramLongPollingBot {
     /**
      * Отправка текстового сообщения
      */
-    public void sendTextMessage(Long chatId, String text) {
-        try {
-            SendMessage message = SendMessage.builder()
-                    .chatId(chatId.toString())
-                    .text(text)
-                    .parseMode("HTML")
-                    .build();
-            execute(message);
-            log.debug("Отправлено сообщение пользователю {}: {}", chatId, text);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при отправке сообщения пользователю {}: ", chatId, e);
+    public CompletableFuture<Message> sendTextMessage(Long chatId, String text) {
+        return sendTextMessage(chatId, text, SendPriority.INTERACTIVE);
+    }
+
+    /**
+     * Отправка текстового сообщения с указанным приоритетом
+     */
+    public CompletableFuture<Message> sendTextMessage(Long chatId, String text, SendPriority priority) {
+        SendMessage message = SendMessage.builder()
+                .chatId(chatId.toString())
+                .text(text)
+                .parseMode("HTML")
+                .build();
+        return enqueue(chatId, message, priority).whenComplete((sent, error) -> {
+            if (error != null) {
+                log.error("Ошибка при отправке сообщения пользователю {}: ", chatId, error);
+            } else {
+                log.debug("Отправлено сообщение пользователю {}: {}", chatId, text);
+            }
+        });
+    }
+
+    /**
+     * Отправка фотографии (массовая отправка)
+     *
+     * @param fileId    file_id фотографии в Telegram или null, если фотография еще не загружалась
+     * @param photoData открытие потока данных фотографии, вызывается только при необходимости загрузки.
+     *                  Поток передается в тело запроса без копирования и закрывается после отправки
+     */
+    public CompletableFuture<Message> sendPhoto(Long chatId, String fileId, Supplier<InputStream> photoData,
+                                                String caption) {
+        return sendPhoto(chatId, SendPriority.BULK, fileId,
+                () -> new InputFile(photoData.get(), "wolf.jpg"),
+                photo -> SendPhoto.builder()
+                        .chatId(chatId.toString())
+                        .photo(photo)
+                        .caption(caption)
+                        .parseMode("HTML")
+                        .build()
+        ).whenComplete((sent, error) -> {
+            if (error != null) {
+                log.error("Ошибка при отправке фотографии пользователю {}: ", chatId, error);
+            } else {
+                log.debug("Отправлена фотография пользователю {}", chatId);
+            }
+        });
+    }
+
+    /**
+     * Отправка фотографии по file_id. Данные загружаются в Telegram, только если file_id
+     * неизвестен или Telegram его отклонил
+     *
+     * @param fileId  file_id фотографии или null
+     * @param upload  файл для загрузки данных фотографии
+     * @param request построение запроса для переданного файла
+     */
+    public CompletableFuture<Message> sendPhoto(Long chatId, SendPriority priority, String fileId,
+                                                Supplier<InputFile> upload,
+                                                Function<InputFile, SendPhoto> request) {
+        if (fileId == null) {
+            return enqueuePhoto(chatId, priority, () -> request.apply(upload.get()));
         }
+
+        return enqueuePhoto(chatId, priority, () -> request.apply(new InputFile(fileId)))
+                .exceptionallyCompose(error -> {
+                    if (!isFileRejected(error)) {
+                        return CompletableFuture.failedFuture(error);
+                    }
+                    log.warn("Telegram отклонил file_id фотографии, данные будут загружены заново: {}",
+                            error.getMessage());
+                    return enqueuePhoto(chatId, priority, () -> request.apply(upload.get()));
+                });
     }
 
     /**
-     * Отправка фотографии
+     * Отклонил ли Telegram запрос из-за некорректного file_id.
+     * Остальные ошибки 400 (чат не найден, ошибка разметки подписи) повторная загрузка не исправит
      */
-    public void sendPhoto(Long chatId, byte[] photoData, String caption) {
-        try {
-            SendPhoto sendPhoto = SendPhoto.builder()
-                    .chatId(chatId.toString())
-                    .photo(new org.telegram.telegrambots.meta.api.objects.InputFile(
-                            new java.io.ByteArrayInputStream(photoData), "wolf.jpg"))
-                    .caption(caption)
-                    .parseMode("HTML")
-                    .build();
-            execute(sendPhoto);
-            log.debug("Отправлена фотография пользователю {}", chatId);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при отправке фотографии пользователю {}: ", chatId, e);
+    static boolean isFileRejected(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        if (!(cause instanceof TelegramApiRequestException requestException)
+                || !Integer.valueOf(400).equals(requestException.getErrorCode())
+                || requestException.getApiResponse() == null) {
+            return false;
         }
+        String description = requestException.getApiResponse().toLowerCase(Locale.ROOT);
+        return FILE_ID_ERRORS.stream().anyMatch(description::contains);
+    }
+
+    /**
+     * Поставить метод Telegram API в очередь отправки с интерактивным приоритетом
+     */
+    public <T extends Serializable> CompletableFuture<T> enqueue(Long chatId, BotApiMethod<T> method) {
+        return enqueue(chatId, method, SendPriority.INTERACTIVE);
+    }
+
+    /**
+     * Поставить метод Telegram API в очередь отправки
+     */
+    public <T extends Serializable> CompletableFuture<T> enqueue(Long chatId, BotApiMethod<T> method,
+                                                                 SendPriority priority) {
+        return outboundQueue.submit(chatId, priority, () -> execute(method));
+    }
+
+    /**
+     * Поставить отправку фотографии в очередь.
+     * Запрос создается заново при каждой попытке, так как поток данных фотографии одноразовый
+     */
+    public CompletableFuture<Message> enqueuePhoto(Long chatId, SendPriority priority,
+                                                   Supplier<SendPhoto> sendPhoto) {
+        return outboundQueue.submit(chatId, priority, () -> execute(sendPhoto.get()));
     }
 
     /**
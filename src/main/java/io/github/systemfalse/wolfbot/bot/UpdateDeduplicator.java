@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.bot;
+
+import io.github.systemfalse.wolfbot.model.BotState;
+import io.github.systemfalse.wolfbot.repository.BotStateRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Отсеивание повторно доставленных обновлений.
+ * <p>
+ * Недавно полученные update_id хранятся в кольцевой битовой маске фиксированного размера.
+ * В БД периодически сохраняется наибольший update_id, до которого все полученные обновления
+ * уже обработаны. После перезапуска обновления с меньшими ID не обрабатываются повторно,
+ * а принятые, но не обработанные до остановки, будут обработаны после повторной доставки
+ */
+@Component
+@Slf4j
+public class UpdateDeduplicator {
+
+    private static final String OFFSET_KEY = "last_update_id";
+    static final int WINDOW_BITS = 1 << 16;
+    private static final int WINDOW_MASK = WINDOW_BITS - 1;
+
+    private final BotStateRepository botStateRepository;
+    private final Counter duplicateCounter;
+    private final long[] window = new long[WINDOW_BITS / Long.SIZE];
+
+    // Наибольший полученный update_id, -1 если обновлений еще не было
+    private long highest = -1;
+    // Полученные, но еще не обработанные update_id
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    // Все update_id до этого значения включительно получены до перезапуска
+    private long restoredOffset = -1;
+    private long savedOffset = -1;
+
+    public UpdateDeduplicator(BotStateRepository botStateRepository, MeterRegistry meterRegistry) {
+        this.botStateRepository = botStateRepository;
+        this.duplicateCounter = Counter.builder("wolfbot.updates.duplicate")
+                .description("Повторно доставленные и отброшенные обновления")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        botStateRepository.findById(OFFSET_KEY).ifPresent(state -> {
+            restoredOffset = Long.parseLong(state.getValue());
+            highest = restoredOffset;
+            savedOffset = restoredOffset;
+            log.info("Восстановлен последний обработанный update_id: {}", restoredOffset);
+        });
+    }
+
+    /**
+     * Отметить обновление как полученное. Для каждого впервые полученного обновления
+     * должен быть вызван {@link #markFinished(long)}
+     *
+     * @return true, если обновление получено впервые
+     */
+    public boolean markReceived(long updateId) {
+        boolean fresh = mark(updateId);
+        if (!fresh) {
+            duplicateCounter.increment();
+            log.debug("Повторно доставленное обновление {} отброшено", updateId);
+        }
+        return fresh;
+    }
+
+    private synchronized boolean mark(long updateId) {
+        if (highest < 0 || updateId > highest) {
+            advanceTo(updateId);
+        } else if (updateId <= highest - WINDOW_BITS) {
+            // После долгого простоя Telegram начинает нумерацию обновлений заново
+            log.info("Последовательность update_id начата заново: {} после {}", updateId, highest);
+            Arrays.fill(window, 0);
+            // ID прежней последовательности больше не влияют на сохраняемое значение
+            inFlight.clear();
+            restoredOffset = -1;
+            highest = updateId;
+        } else if (updateId <= restoredOffset) {
+            return false;
+        }
+
+        int slot = (int) (updateId & WINDOW_MASK);
+        long bit = 1L << slot;
+        int word = slot >>> 6;
+        if ((window[word] & bit) != 0) {
+            return false;
+        }
+        window[word] |= bit;
+        inFlight.add(updateId);
+        return true;
+    }
+
+    /**
+     * Отметить обновление как обработанное или отброшенное
+     */
+    public synchronized void markFinished(long updateId) {
+        inFlight.remove(updateId);
+    }
+
+    /**
+     * Наибольший update_id, до которого все полученные обновления обработаны
+     */
+    private synchronized long finishedOffset() {
+        return inFlight.isEmpty() ? highest : inFlight.first() - 1;
+    }
+
+    /**
+     * Сдвинуть окно, очистив ячейки ID, которые из него выходят
+     */
+    private void advanceTo(long updateId) {
+        if (highest < 0 || updateId - highest >= WINDOW_BITS) {
+            Arrays.fill(window, 0);
+        } else {
+            for (long id = highest + 1; id <= updateId; id++) {
+                int slot = (int) (id & WINDOW_MASK);
+                window[slot >>> 6] &= ~(1L << slot);
+            }
+        }
+        highest = updateId;
+    }
+
+    /**
+     * Сохранить наибольший update_id, до которого все полученные обновления обработаны
+     */
+    @Scheduled(fixedDelayString = "${telegram.bot.dispatcher.offset-flush-interval:5s}")
+    public void saveOffset() {
+        long offset = finishedOffset();
+        if (offset < 0 || offset == savedOffset) {
+            return;
+        }
+
+        try {
+            botStateRepository.save(BotState.builder()
+                    .key(OFFSET_KEY)
+                    .value(Long.toString(offset))
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+            savedOffset = offset;
+        } catch (Exception e) {
+            log.error("Ошибка при сохранении последнего обработанного update_id: ", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saveOffset();
+    }
+}
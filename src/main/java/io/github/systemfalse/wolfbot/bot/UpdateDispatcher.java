@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.bot;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Диспетчер обновлений: выполняет обработку на виртуальных потоках,
+ * сохраняя порядок обновлений внутри одного чата.
+ * <p>
+ * Количество принятых, но еще не обработанных обновлений ограничено. При заполнении очереди
+ * сначала отбрасываются малоценные обновления, затем все, кроме высокоприоритетных
+ */
+@Component
+@Slf4j
+public class UpdateDispatcher {
+
+    private final BotConfig botConfig;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> chatQueues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> busyReplies = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<UpdatePriority, Integer> admissionLimits = new EnumMap<>(UpdatePriority.class);
+    private final Map<UpdatePriority, Counter> shedCounters = new EnumMap<>(UpdatePriority.class);
+    private final Counter acceptedCounter;
+    private final long busyReplyIntervalNanos;
+
+    public UpdateDispatcher(BotConfig botConfig, MeterRegistry meterRegistry) {
+        this.botConfig = botConfig;
+        BotConfig.Dispatcher config = botConfig.getDispatcher();
+        this.permits = new Semaphore(config.getMaxConcurrency(), true);
+        this.busyReplyIntervalNanos = config.getBusyReplyInterval().toNanos();
+
+        int capacity = config.getQueueCapacity();
+        admissionLimits.put(UpdatePriority.HIGH, capacity);
+        admissionLimits.put(UpdatePriority.NORMAL, capacity - (int) (capacity * config.getHighPriorityReserve()));
+        admissionLimits.put(UpdatePriority.LOW, (int) (capacity * config.getLowPriorityShare()));
+
+        for (UpdatePriority priority : UpdatePriority.values()) {
+            shedCounters.put(priority, Counter.builder("wolfbot.updates.shed")
+                    .description("Обновления, отброшенные из-за перегрузки")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.acceptedCounter = Counter.builder("wolfbot.updates.accepted")
+                .description("Обновления, принятые на обработку")
+                .register(meterRegistry);
+        Gauge.builder("wolfbot.updates.queued", queued, AtomicInteger::get)
+                .description("Принятые, но еще не обработанные обновления")
+                .register(meterRegistry);
+        Gauge.builder("wolfbot.updates.active.chats", chatQueues, Map::size)
+                .description("Чаты, обновления которых сейчас в обработке")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Передать обновление на обработку
+     *
+     * @param priority  ценность обновления, определяет порог отбрасывания
+     * @param processor обработчик обновления
+     * @param onShed    дешевый ответ пользователю на отброшенное обновление,
+     *                  вызывается не чаще одного раза за интервал для каждого чата
+     * @param onDone    вызывается ровно один раз, когда обновление обработано, отброшено
+     *                  или его обработка прервана
+     * @return true, если обновление принято
+     */
+    public boolean dispatch(Update update, UpdatePriority priority, Consumer<Update> processor,
+                            Consumer<Update> onShed, Consumer<Update> onDone) {
+        Long chatId = getChatId(update);
+
+        if (!tryAdmit(priority)) {
+            shedCounters.get(priority).increment();
+            log.debug("Очередь обновлений заполнена ({}), отброшено обновление {} с приоритетом {}",
+                    queued.get(), update.getUpdateId(), priority);
+            try {
+                if (chatId != null && shouldReplyBusy(chatId)) {
+                    onShed.accept(update);
+                }
+            } finally {
+                onDone.accept(update);
+            }
+            return false;
+        }
+        acceptedCounter.increment();
+
+        Runnable task = () -> {
+            try {
+                process(update, processor);
+            } finally {
+                queued.decrementAndGet();
+                onDone.accept(update);
+            }
+        };
+
+        if (chatId == null) {
+            executor.execute(task);
+            return true;
+        }
+
+        // Новое обновление чата выполняется только после завершения предыдущего
+        CompletableFuture<Void> tail = chatQueues.compute(chatId, (id, previous) -> previous == null
+                ? CompletableFuture.runAsync(task, executor)
+                : previous.thenRunAsync(task, executor));
+        tail.whenComplete((result, error) -> chatQueues.remove(chatId, tail));
+        return true;
+    }
+
+    /**
+     * Занять место в очереди, если не превышен порог для данного приоритета
+     */
+    private boolean tryAdmit(UpdatePriority priority) {
+        int limit = admissionLimits.get(priority);
+        while (true) {
+            int current = queued.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (queued.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Можно ли отправить в чат сообщение о перегрузке
+     */
+    private boolean shouldReplyBusy(Long chatId) {
+        long now = System.nanoTime();
+        AtomicBoolean reply = new AtomicBoolean();
+        busyReplies.compute(chatId, (id, last) -> {
+            if (last == null || now - last >= busyReplyIntervalNanos) {
+                reply.set(true);
+                return now;
+            }
+            return last;
+        });
+        return reply.get();
+    }
+
+    /**
+     * Удалить устаревшие отметки об отправленных сообщениях о перегрузке
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictBusyReplies() {
+        long now = System.nanoTime();
+        busyReplies.values().removeIf(last -> now - last >= busyReplyIntervalNanos);
+    }
+
+    /**
+     * Выполнить обработку с ограничением количества одновременных обработчиков
+     */
+    private void process(Update update, Consumer<Update> processor) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Обработка обновления {} прервана", update.getUpdateId());
+            return;
+        }
+
+        try {
+            processor.accept(update);
+        } catch (Exception e) {
+            log.error("Ошибка при обработке обновления {}: ", update.getUpdateId(), e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Получить ID чата, к которому относится обновление
+     */
+    private Long getChatId(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        } else if (update.hasCallbackQuery()) {
+            if (update.getCallbackQuery().getMessage() != null) {
+                return update.getCallbackQuery().getMessage().getChatId();
+            }
+            return update.getCallbackQuery().getFrom().getId();
+        }
+        return null;
+    }
+
+    /**
+     * Количество чатов, обновления которых сейчас в обработке
+     */
+    public int getActiveChats() {
+        return chatQueues.size();
+    }
+
+    /**
+     * Количество принятых, но еще не обработанных обновлений
+     */
+    public int getQueuedUpdates() {
+        return queued.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(botConfig.getMessageTimeout(), TimeUnit.SECONDS)) {
+                log.warn("Не все обновления были обработаны до остановки бота");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.bot;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Встроенный HTTP сервер для приема обновлений через webhook.
+ * <p>
+ * Для локальной проверки достаточно отключить регистрацию webhook
+ * ({@code telegram.bot.webhook.register=false}) и отправить JSON обновления:
+ * {@code curl -X POST -H "Content-Type: application/json" -d @update.json http://localhost:8443/telegram/webhook}
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookServer {
+
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    private static final int MAX_BODY_SIZE = 1024 * 1024;
+
+    private final BotConfig botConfig;
+    private final TelegramBot telegramBot;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Запустить HTTP сервер и зарегистрировать webhook в Telegram
+     */
+    public void start() throws IOException, TelegramApiException {
+        BotConfig.Webhook webhook = botConfig.getWebhook();
+
+        server = HttpServer.create(new InetSocketAddress(webhook.getPort()), 0);
+        server.createContext(webhook.getPath(), this::handleExchange);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.start();
+        log.info("Webhook сервер запущен на порту {}, путь {}", webhook.getPort(), webhook.getPath());
+
+        if (webhook.isRegister()) {
+            registerWebhook(webhook);
+        }
+    }
+
+    /**
+     * Зарегистрировать адрес webhook в Telegram
+     */
+    private void registerWebhook(BotConfig.Webhook webhook) throws TelegramApiException {
+        if (webhook.getUrl() == null || webhook.getUrl().isBlank()) {
+            throw new IllegalStateException("Не задан публичный адрес webhook (telegram.bot.webhook.url)");
+        }
+
+        SetWebhook setWebhook = SetWebhook.builder()
+                .url(webhook.getUrl() + webhook.getPath())
+                .secretToken(isSecretConfigured() ? webhook.getSecretToken() : null)
+                .dropPendingUpdates(webhook.isDropPendingUpdates())
+                .build();
+        telegramBot.execute(setWebhook);
+        log.info("Webhook зарегистрирован: {}", setWebhook.getUrl());
+    }
+
+    /**
+     * Обработка входящего HTTP запроса
+     */
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            if (isSecretConfigured() && !isSecretValid(exchange.getRequestHeaders().getFirst(SECRET_HEADER))) {
+                log.warn("Отклонен webhook запрос с неверным секретом от {}", exchange.getRemoteAddress());
+                exchange.sendResponseHeaders(403, -1);
+                return;
+            }
+
+            Update update;
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] data = body.readNBytes(MAX_BODY_SIZE + 1);
+                if (data.length > MAX_BODY_SIZE) {
+                    exchange.sendResponseHeaders(413, -1);
+                    return;
+                }
+                update = objectMapper.readValue(data, Update.class);
+            } catch (IOException e) {
+                log.warn("Некорректное тело webhook запроса: {}", e.getMessage());
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            // Подтверждаем получение сразу, обработка выполняется диспетчером
+            exchange.sendResponseHeaders(200, -1);
+            telegramBot.onUpdateReceived(update);
+        }
+    }
+
+    private boolean isSecretConfigured() {
+        String secret = botConfig.getWebhook().getSecretToken();
+        return secret != null && !secret.isBlank();
+    }
+
+    private boolean isSecretValid(String received) {
+        return received != null && MessageDigest.isEqual(
+                botConfig.getWebhook().getSecretToken().getBytes(StandardCharsets.UTF_8),
+                received.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            log.info("Webhook сервер остановлен");
+        }
+    }
+}
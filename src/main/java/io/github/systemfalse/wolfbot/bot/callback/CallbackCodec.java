@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.bot.callback;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Компактное кодирование данных inline кнопок.
+ * <p>
+ * Формат: байт версии, байт кода действия, ID в формате varint и необязательное
+ * дополнительное значение в формате varint. Результат кодируется в base64url без
+ * дополнения, например кнопка одобрения изображения 123 занимает 4 символа вместо 20.
+ * Строки старого формата ({@code moderate_approve_123}) по-прежнему распознаются,
+ * чтобы кнопки в уже отправленных сообщениях продолжали работать
+ */
+public final class CallbackCodec {
+
+    private static final byte VERSION = 1;
+    // Ограничение Telegram на данные callback — 64 байта
+    private static final int MAX_LENGTH = 64;
+    private static final int MAX_VARINT_BYTES = 10;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final int[] DECODE_TABLE = new int[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private CallbackCodec() {
+    }
+
+    /**
+     * Закодировать действие без дополнительных данных
+     */
+    public static String encode(CallbackAction action, long id) {
+        return encode(action, id, 0);
+    }
+
+    /**
+     * Закодировать действие с дополнительным значением
+     */
+    public static String encode(CallbackAction action, long id, long extra) {
+        if (id < 0 || extra < 0) {
+            throw new IllegalArgumentException("ID и дополнительные данные callback не могут быть отрицательными");
+        }
+
+        byte[] buffer = new byte[2 + 2 * MAX_VARINT_BYTES];
+        buffer[0] = VERSION;
+        buffer[1] = (byte) action.getCode();
+        int length = writeVarint(buffer, 2, id);
+        if (extra != 0) {
+            length = writeVarint(buffer, length, extra);
+        }
+        return ENCODER.encodeToString(Arrays.copyOf(buffer, length));
+    }
+
+    /**
+     * Разобрать данные callback
+     *
+     * @return данные или null, если формат не распознан
+     */
+    public static CallbackData decode(String data) {
+        if (data == null || data.isEmpty() || data.length() > MAX_LENGTH) {
+            return null;
+        }
+        CallbackData decoded = decodeBinary(data);
+        return decoded != null ? decoded : decodeLegacy(data);
+    }
+
+    private static CallbackData decodeBinary(String data) {
+        int length = data.length();
+        byte[] bytes = new byte[length * 6 / 8];
+        int count = 0;
+        int buffer = 0;
+        int bits = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            int value = c < DECODE_TABLE.length ? DECODE_TABLE[c] : -1;
+            if (value < 0) {
+                return null;
+            }
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[count++] = (byte) (buffer >>> bits);
+                buffer &= (1 << bits) - 1;
+            }
+        }
+
+        if (count < 3 || bytes[0] != VERSION) {
+            return null;
+        }
+        CallbackAction action = CallbackAction.fromCode(bytes[1]);
+        if (action == null) {
+            return null;
+        }
+
+        // Последовательно читаем ID и необязательное дополнительное значение
+        long id = 0;
+        long extra = 0;
+        int field = 0;
+        long value = 0;
+        int shift = 0;
+        for (int position = 2; position < count; position++) {
+            int b = bytes[position] & 0xFF;
+            if (shift >= 63) {
+                return null;
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            if (field == 0) {
+                id = value;
+            } else if (field == 1) {
+                extra = value;
+            } else {
+                return null;
+            }
+            field++;
+            value = 0;
+            shift = 0;
+        }
+
+        if (field == 0 || shift != 0) {
+            return null;
+        }
+        return new CallbackData(action, id, extra);
+    }
+
+    /**
+     * Разбор строк старого формата без разбиения на части
+     */
+    private static CallbackData decodeLegacy(String data) {
+        if (data.equals("processed")) {
+            return new CallbackData(CallbackAction.PROCESSED, 0, 0);
+        }
+        if (data.equals("schedule_cancel")) {
+            return new CallbackData(CallbackAction.SCHEDULE_CANCEL, 0, 0);
+        }
+        if (data.startsWith("schedule_daily_")) {
+            return legacyWithId(CallbackAction.SCHEDULE_DAILY, data, "schedule_daily_".length());
+        }
+        if (!data.startsWith("moderate_")) {
+            return null;
+        }
+
+        int offset = "moderate_".length();
+        if (data.startsWith("approve_", offset)) {
+            return legacyWithId(CallbackAction.APPROVE, data, offset + "approve_".length());
+        } else if (data.startsWith("reject_", offset)) {
+            return legacyWithId(CallbackAction.REJECT, data, offset + "reject_".length());
+        } else if (data.startsWith("block_", offset)) {
+            return legacyWithId(CallbackAction.BLOCK, data, offset + "block_".length());
+        } else if (data.startsWith("details_", offset)) {
+            return legacyWithId(CallbackAction.DETAILS, data, offset + "details_".length());
+        }
+        return null;
+    }
+
+    private static CallbackData legacyWithId(CallbackAction action, String data, int idStart) {
+        try {
+            return new CallbackData(action, Long.parseLong(data, idStart, data.length(), 10), 0);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int writeVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
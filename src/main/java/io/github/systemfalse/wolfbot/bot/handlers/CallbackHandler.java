@@ -23,6 +23,9 @@
 package io.github.systemfalse.wolfbot.bot.handlers;
 
 import io.github.systemfalse.wolfbot.bot.TelegramBot;
+import io.github.systemfalse.wolfbot.bot.callback.CallbackAction;
+import io.github.systemfalse.wolfbot.bot.callback.CallbackCodec;
+import io.github.systemfalse.wolfbot.bot.callback.CallbackData;
 import io.github.systemfalse.wolfbot.model.ImageStatus;
 import io.github.systemfalse.wolfbot.service.ModerationService;
 import io.github.systemfalse.wolfbot.service.UserService;
@@ -34,7 +37,6 @@ import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageRe
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -48,6 +50,8 @@ public class CallbackHandler {
     private final ModerationService moderationService;
     private final UserService userService;
 
+    private final CallbackRoute[] routes = createRoutes();
+
     public void initBot(TelegramBot telegramBot) {
         this.telegramBot = telegramBot;
     }
@@ -58,8 +62,6 @@ public class CallbackHandler {
     public void handleCallback(CallbackQuery callbackQuery) {
         String callbackData = callbackQuery.getData();
         Long userId = callbackQuery.getFrom().getId();
-        String messageId = callbackQuery.getMessage().getMessageId().toString();
-        Long chatId = callbackQuery.getMessage().getChatId();
 
         log.info("Получен callback от пользователя {}: {}", userId, callbackData);
 
@@ -71,17 +73,16 @@ public class CallbackHandler {
                 return;
             }
 
-            // Обрабатываем различные типы callback'ов
-            if (callbackData.startsWith("moderate_")) {
-                handleModerationCallback(callbackQuery, callbackData);
-            } else if (callbackData.startsWith("schedule_")) {
-                handleScheduleCallback(callbackQuery, callbackData);
-            } else {
+            CallbackData data = CallbackCodec.decode(callbackData);
+            if (data == null) {
                 log.warn("Неизвестный callback: {}", callbackData);
                 answerCallbackQuery(callbackQuery.getId(),
                         "❌ Неизвестная команда.", true);
+                return;
             }
 
+            routes[data.action().ordinal()].handle(callbackQuery, data);
+
         } catch (Exception e) {
             log.error("Ошибка при обработке callback {}: ", callbackData, e);
             answerCallbackQuery(callbackQuery.getId(),
@@ -90,122 +91,81 @@ public class CallbackHandler {
     }
 
     /**
-     * Обработка callback'ов модерации
+     * Таблица обработчиков, индексированная по действию
      */
-    private void handleModerationCallback(CallbackQuery callbackQuery, String callbackData) {
-        String[] parts = callbackData.split("_");
-        if (parts.length < 3) {
-            answerCallbackQuery(callbackQuery.getId(),
-                    "❌ Некорректный формат команды.", true);
-            return;
-        }
-
-        String action = parts[1]; // approve, reject, block, details
-        Long imageId;
-
-        try {
-            imageId = Long.parseLong(parts[2]);
-        } catch (NumberFormatException e) {
-            answerCallbackQuery(callbackQuery.getId(),
-                    "❌ Некорректный ID изображения.", true);
-            return;
-        }
-
-        Long moderatorId = callbackQuery.getFrom().getId();
-
-        switch (action) {
-            case "approve" -> {
-                moderationService.processModerationDecision(
-                        imageId, moderatorId, ImageStatus.APPROVED, null);
-
-                // Убираем кнопки и показываем результат
-                removeInlineKeyboard(callbackQuery);
+    private CallbackRoute[] createRoutes() {
+        CallbackRoute[] table = new CallbackRoute[CallbackAction.values().length];
+        table[CallbackAction.PROCESSED.ordinal()] = (callbackQuery, data) ->
+                answerCallbackQuery(callbackQuery.getId(), "✅ Изображение уже обработано.", false);
+        table[CallbackAction.APPROVE.ordinal()] = (callbackQuery, data) ->
+                handleModerationDecision(callbackQuery, data.id(), ImageStatus.APPROVED, null,
+                        "✅ Изображение одобрено!");
+        table[CallbackAction.REJECT.ordinal()] = (callbackQuery, data) ->
+                handleModerationDecision(callbackQuery, data.id(), ImageStatus.REJECTED, "Отклонено модератором",
+                        "❌ Изображение отклонено!");
+        table[CallbackAction.BLOCK.ordinal()] = (callbackQuery, data) ->
+                handleModerationDecision(callbackQuery, data.id(), ImageStatus.BLOCKED, "Нарушение правил сообщества",
+                        "🚫 Изображение заблокировано!");
+        table[CallbackAction.DETAILS.ordinal()] = this::handleDetailsCallback;
+        table[CallbackAction.FULL_SIZE.ordinal()] = this::handleFullSizeCallback;
+        // Здесь можно добавить логику установки и отмены расписания
+        table[CallbackAction.SCHEDULE_DAILY.ordinal()] = (callbackQuery, data) ->
                 answerCallbackQuery(callbackQuery.getId(),
-                        "✅ Изображение одобрено!", false);
-            }
-            case "reject" -> {
-                moderationService.processModerationDecision(
-                        imageId, moderatorId, ImageStatus.REJECTED, "Отклонено модератором");
-
-                removeInlineKeyboard(callbackQuery);
+                        "⏰ Установлено ежедневное расписание на " + data.id() + ":00", false);
+        table[CallbackAction.SCHEDULE_CANCEL.ordinal()] = (callbackQuery, data) ->
                 answerCallbackQuery(callbackQuery.getId(),
-                        "❌ Изображение отклонено!", false);
-            }
-            case "block" -> {
-                moderationService.processModerationDecision(
-                        imageId, moderatorId, ImageStatus.BLOCKED, "Нарушение правил сообщества");
-
-                removeInlineKeyboard(callbackQuery);
-                answerCallbackQuery(callbackQuery.getId(),
-                        "🚫 Изображение заблокировано!", false);
-            }
-            case "details" -> {
-                moderationService.sendImageDetails(imageId, moderatorId);
-                answerCallbackQuery(callbackQuery.getId(),
-                        "ℹ️ Детали отправлены отдельным сообщением.", false);
-            }
-            default -> {
-                answerCallbackQuery(callbackQuery.getId(),
-                        "❌ Неизвестное действие модерации.", true);
-            }
-        }
+                        "❌ Настройка расписания отменена.", false);
+        return table;
     }
 
     /**
-     * Обработка callback'ов расписания
+     * Обработка решения модератора
      */
-    private void handleScheduleCallback(CallbackQuery callbackQuery, String callbackData) {
-        // Здесь можно добавить обработку callback'ов для настройки расписания
-        // Например: schedule_set_daily_12, schedule_cancel, etc.
-
-        String[] parts = callbackData.split("_");
-        if (parts.length < 2) {
-            answerCallbackQuery(callbackQuery.getId(),
-                    "❌ Некорректный формат команды расписания.", true);
-            return;
-        }
+    private void handleModerationDecision(CallbackQuery callbackQuery, long imageId, ImageStatus status,
+                                          String reason, String answer) {
+        moderationService.processModerationDecision(
+                imageId, callbackQuery.getFrom().getId(), status, reason);
+
+        // Убираем кнопки и показываем результат
+        removeInlineKeyboard(callbackQuery);
+        answerCallbackQuery(callbackQuery.getId(), answer, false);
+    }
 
-        String action = parts[1];
-        Long userId = callbackQuery.getFrom().getId();
+    /**
+     * Отправка подробностей об изображении модератору
+     */
+    private void handleDetailsCallback(CallbackQuery callbackQuery, CallbackData data) {
+        moderationService.sendImageDetails(data.id(), callbackQuery.getFrom().getId());
+        answerCallbackQuery(callbackQuery.getId(),
+                "ℹ️ Детали отправлены отдельным сообщением.", false);
+    }
 
-        switch (action) {
-            case "daily" -> {
-                if (parts.length >= 3) {
-                    String hour = parts[2];
-                    // Логика установки ежедневного расписания
-                    answerCallbackQuery(callbackQuery.getId(),
-                            "⏰ Установлено ежедневное расписание на " + hour + ":00", false);
-                }
-            }
-            case "cancel" -> {
-                // Логика отмены расписания
-                answerCallbackQuery(callbackQuery.getId(),
-                        "❌ Настройка расписания отменена.", false);
-            }
-            default -> {
-                answerCallbackQuery(callbackQuery.getId(),
-                        "❌ Неизвестное действие расписания.", true);
-            }
-        }
+    /**
+     * Отправка оригинала изображения модератору
+     */
+    private void handleFullSizeCallback(CallbackQuery callbackQuery, CallbackData data) {
+        moderationService.sendFullSizeImage(data.id(), callbackQuery.getFrom().getId());
+        answerCallbackQuery(callbackQuery.getId(),
+                "🔎 Оригинал отправлен отдельным сообщением.", false);
     }
 
     /**
      * Убрать inline клавиатуру из сообщения
      */
     private void removeInlineKeyboard(CallbackQuery callbackQuery) {
-        try {
-            EditMessageReplyMarkup editMarkup = EditMessageReplyMarkup.builder()
-                    .chatId(callbackQuery.getMessage().getChatId().toString())
-                    .messageId(callbackQuery.getMessage().getMessageId())
-                    .replyMarkup(InlineKeyboardMarkup.builder()
-                            .keyboard(createProcessedKeyboard())
-                            .build())
-                    .build();
-
-            telegramBot.execute(editMarkup);
-        } catch (TelegramApiException e) {
+        Long chatId = callbackQuery.getMessage().getChatId();
+        EditMessageReplyMarkup editMarkup = EditMessageReplyMarkup.builder()
+                .chatId(chatId.toString())
+                .messageId(callbackQuery.getMessage().getMessageId())
+                .replyMarkup(InlineKeyboardMarkup.builder()
+                        .keyboard(createProcessedKeyboard())
+                        .build())
+                .build();
+
+        telegramBot.enqueue(chatId, editMarkup).exceptionally(e -> {
             log.error("Ошибка при удалении inline клавиатуры: ", e);
-        }
+            return null;
+        });
     }
 
     /**
@@ -217,7 +177,7 @@ public class CallbackHandler {
 
         row.add(InlineKeyboardButton.builder()
                 .text("✅ Обработано")
-                .callbackData("processed")
+                .callbackData(CallbackCodec.encode(CallbackAction.PROCESSED, 0))
                 .build());
 
         keyboard.add(row);
@@ -228,16 +188,24 @@ public class CallbackHandler {
      * Отправить ответ на callback запрос
      */
     private void answerCallbackQuery(String callbackQueryId, String text, boolean showAlert) {
-        try {
-            AnswerCallbackQuery answer = AnswerCallbackQuery.builder()
-                    .callbackQueryId(callbackQueryId)
-                    .text(text)
-                    .showAlert(showAlert)
-                    .build();
-
-            telegramBot.execute(answer);
-        } catch (TelegramApiException e) {
+        AnswerCallbackQuery answer = AnswerCallbackQuery.builder()
+                .callbackQueryId(callbackQueryId)
+                .text(text)
+                .showAlert(showAlert)
+                .build();
+
+        // Ответ на callback не относится к сообщениям чата и ограничен только глобальным лимитом
+        telegramBot.enqueue(null, answer).exceptionally(e -> {
             log.error("Ошибка при отправке ответа на callback запрос: ", e);
-        }
+            return null;
+        });
+    }
+
+    /**
+     * Обработчик действия inline кнопки
+     */
+    @FunctionalInterface
+    private interface CallbackRoute {
+        void handle(CallbackQuery callbackQuery, CallbackData data);
     }
 }
@@ -31,11 +31,25 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
+import java.util.Map;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MessageHandler {
 
+    /**
+     * Таблица команд: по ней и определяется, известна ли команда, и выполняется её обработка
+     */
+    private static final Map<String, Command> COMMANDS = Map.of(
+            "/start", MessageHandler::handleStartCommand,
+            "/help", (handler, chatId, user) -> handler.handleHelpCommand(chatId),
+            "/subscribe", MessageHandler::handleSubscribeCommand,
+            "/unsubscribe", MessageHandler::handleUnsubscribeCommand,
+            "/schedule", MessageHandler::handleScheduleCommand,
+            "/upload", (handler, chatId, user) -> handler.handleUploadCommand(chatId),
+            "/status", MessageHandler::handleStatusCommand);
+
     private TelegramBot telegramBot;
     private final UserService userService;
     private final ScheduleService scheduleService;
@@ -44,6 +58,13 @@ public class MessageHandler {
         this.telegramBot = telegramBot;
     }
 
+    /**
+     * Является ли текст известной командой бота
+     */
+    public static boolean isKnownCommand(String text) {
+        return COMMANDS.containsKey(text);
+    }
+
     public void handleTextMessage(Message message) {
         String text = message.getText();
         Long userId = message.getFrom().getId();
@@ -55,30 +76,11 @@ public class MessageHandler {
         User user = userService.findOrCreateUser(message.getFrom());
 
         // Обработка команд
-        switch (text) {
-            case "/start":
-                handleStartCommand(chatId, user);
-                break;
-            case "/help":
-                handleHelpCommand(chatId);
-                break;
-            case "/subscribe":
-                handleSubscribeCommand(chatId, user);
-                break;
-            case "/unsubscribe":
-                handleUnsubscribeCommand(chatId, user);
-                break;
-            case "/schedule":
-                handleScheduleCommand(chatId, user);
-                break;
-            case "/upload":
-                handleUploadCommand(chatId);
-                break;
-            case "/status":
-                handleStatusCommand(chatId, user);
-                break;
-            default:
-                handleUnknownCommand(chatId, text);
+        Command command = COMMANDS.get(text);
+        if (command != null) {
+            command.handle(this, chatId, user);
+        } else {
+            handleUnknownCommand(chatId, text);
         }
     }
 
@@ -184,4 +186,9 @@ public class MessageHandler {
                 "❓ Неизвестная команда: " + text + "\n\n" +
                         "Используйте /help для просмотра доступных команд.");
     }
+
+    @FunctionalInterface
+    private interface Command {
+        void handle(MessageHandler handler, Long chatId, User user);
+    }
 }
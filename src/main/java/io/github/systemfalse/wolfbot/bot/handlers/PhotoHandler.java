@@ -22,28 +22,39 @@
 
 package io.github.systemfalse.wolfbot.bot.handlers;
 
+import io.github.systemfalse.wolfbot.bot.SendPriority;
 import io.github.systemfalse.wolfbot.bot.TelegramBot;
+import io.github.systemfalse.wolfbot.bot.transport.TelegramTransport;
 import io.github.systemfalse.wolfbot.config.BotConfig;
+import io.github.systemfalse.wolfbot.config.ImageConfig;
+import io.github.systemfalse.wolfbot.image.ImageHeader;
+import io.github.systemfalse.wolfbot.image.ImageHeaderParser;
+import io.github.systemfalse.wolfbot.image.PerceptualHasher;
+import io.github.systemfalse.wolfbot.model.ImageStatus;
 import io.github.systemfalse.wolfbot.model.User;
 import io.github.systemfalse.wolfbot.model.WolfImage;
+import io.github.systemfalse.wolfbot.repository.WolfImageSummary;
+import io.github.systemfalse.wolfbot.service.DuplicateImageException;
 import io.github.systemfalse.wolfbot.service.ImageService;
 import io.github.systemfalse.wolfbot.service.ModerationService;
 import io.github.systemfalse.wolfbot.service.UserService;
+import io.github.systemfalse.wolfbot.storage.BlobTooLargeException;
+import io.github.systemfalse.wolfbot.storage.StagedBlob;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.GetFile;
 import org.telegram.telegrambots.meta.api.objects.File;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.PhotoSize;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletionException;
 
 @Component
 @RequiredArgsConstructor
@@ -55,6 +66,8 @@ public class PhotoHandler {
     private final UserService userService;
     private final ModerationService moderationService;
     private final BotConfig botConfig;
+    private final ImageConfig imageConfig;
+    private final TelegramTransport telegramTransport;
 
     public void initBot(TelegramBot telegramBot) {
         this.telegramBot = telegramBot;
@@ -97,55 +110,25 @@ public class PhotoHandler {
                 return;
             }
 
-            // Загружаем файл с серверов Telegram
-            byte[] imageData = downloadPhoto(photo);
-            if (imageData == null) {
+            // Загружаем файл с серверов Telegram сразу во временный файл хранилища
+            StagedBlob imageData;
+            try {
+                imageData = downloadPhoto(photo);
+            } catch (BlobTooLargeException e) {
                 telegramBot.sendTextMessage(chatId,
-                        "❌ Не удалось загрузить фотографию. Попробуйте еще раз.");
+                        String.format("❌ Размер файла слишком большой. Максимальный размер: %.1f МБ",
+                                botConfig.getMaxFileSize() / 1024.0 / 1024.0));
                 return;
             }
-
-            // Проверяем тип файла
-            String mimeType = detectMimeType(imageData);
-            if (!isValidImageType(mimeType)) {
+            if (imageData == null) {
                 telegramBot.sendTextMessage(chatId,
-                        "❌ Неподдерживаемый формат изображения. " +
-                                "Поддерживаются: JPG, PNG, WebP");
+                        "❌ Не удалось загрузить фотографию. Попробуйте еще раз.");
                 return;
             }
 
-            // Создаем объект изображения
-            WolfImage wolfImage = WolfImage.builder()
-                    .fileName(generateFileName(photo.getFileId(), mimeType))
-                    .fileData(imageData)
-                    .fileSize((long) imageData.length)
-                    .mimeType(mimeType)
-                    .uploadedBy(user)
-                    .build();
-
-            // Сохраняем изображение
-            WolfImage savedImage = imageService.saveImage(wolfImage);
-
-            // Отправляем на модерацию
-            moderationService.submitForModeration(savedImage);
-
-            // Уведомляем пользователя
-            String successMessage = String.format(
-                    "✅ <b>Фотография загружена!</b>\n\n" +
-                            "📸 Размер: %.1f КБ\n" +
-                            "🔍 Статус: Ожидает модерации\n" +
-                            "⏳ Время загрузки: %s\n\n" +
-                            "Ваша фотография будет проверена модераторами и, " +
-                            "при одобрении, добавлена в общую коллекцию.",
-                    imageData.length / 1024.0,
-                    java.time.LocalDateTime.now().format(
-                            java.time.format.DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"))
-            );
-
-            telegramBot.sendTextMessage(chatId, successMessage);
-
-            log.info("Фотография успешно обработана. ID: {}, пользователь: {}",
-                    savedImage.getId(), userId);
+            try (imageData) {
+                storePhoto(chatId, user, photo, imageData);
+            }
 
         } catch (Exception e) {
             log.error("Ошибка при обработке фотографии от пользователя {}: ", userId, e);
@@ -155,6 +138,88 @@ public class PhotoHandler {
         }
     }
 
+    /**
+     * Сохранить загруженную фотографию и отправить ее на модерацию
+     */
+    private void storePhoto(Long chatId, User user, PhotoSize photo, StagedBlob imageData) throws IOException {
+        // Такое изображение уже загружали: не сохраняем и не отправляем модераторам
+        Optional<WolfImageSummary> duplicate = imageService.findDuplicate(imageData.key());
+        if (duplicate.isPresent()) {
+            replyDuplicate(chatId, duplicate.get());
+            return;
+        }
+
+        // Формат и размеры читаются из заголовка файла без декодирования пикселей
+        Optional<ImageHeader> header = readHeader(imageData);
+        if (header.isEmpty()) {
+            telegramBot.sendTextMessage(chatId,
+                    "❌ Неподдерживаемый формат изображения. " +
+                            "Поддерживаются: JPG, PNG, WebP");
+            return;
+        }
+        if (header.get().shortSide() < imageConfig.getMinDimension()) {
+            telegramBot.sendTextMessage(chatId,
+                    String.format("❌ Изображение слишком маленькое (%dx%d). Минимальный размер стороны: %d пикселей",
+                            header.get().width(), header.get().height(), imageConfig.getMinDimension()));
+            return;
+        }
+        String mimeType = header.get().mimeType();
+
+        // Перцептивный хеш нужен для поиска пережатых и уменьшенных копий при модерации
+        Long perceptualHash = computePerceptualHash(imageData);
+
+        // Создаем объект изображения
+        WolfImage wolfImage = WolfImage.builder()
+                .fileName(generateFileName(photo.getFileId(), mimeType))
+                .mimeType(mimeType)
+                .telegramFileId(photo.getFileId())
+                .contentHash(imageData.key())
+                .perceptualHash(perceptualHash)
+                .width(header.get().width())
+                .height(header.get().height())
+                .bitDepth(header.get().bitDepth())
+                .build();
+
+        // Сохраняем изображение; копия могла быть загружена одновременно с этой
+        WolfImage savedImage;
+        try {
+            savedImage = imageService.saveImage(wolfImage, user.getTelegramId(), imageData);
+        } catch (DuplicateImageException e) {
+            replyDuplicate(chatId, e.getDuplicate());
+            return;
+        }
+
+        // Отправляем на модерацию
+        moderationService.submitForModeration(savedImage, user);
+
+        // Почти точные копии одобренных изображений отклоняются без участия модераторов
+        if (savedImage.getStatus() == ImageStatus.REJECTED) {
+            telegramBot.sendTextMessage(chatId,
+                    "♻️ <b>Похожая картинка уже есть в коллекции</b>\n\n" +
+                            savedImage.getModerationReason() + ".\n" +
+                            "Попробуйте загрузить другое изображение волка.");
+            return;
+        }
+
+        // Уведомляем пользователя
+        String successMessage = String.format(
+                "✅ <b>Фотография загружена!</b>\n\n" +
+                        "📸 Размер: %.1f КБ\n" +
+                        "🔍 Статус: Ожидает модерации\n" +
+                        "⏳ Время загрузки: %s\n\n" +
+                        "Ваша фотография будет проверена модераторами и, " +
+                        "при одобрении, добавлена в общую коллекцию.",
+                imageData.size() / 1024.0,
+                java.time.LocalDateTime.now().format(
+                        java.time.format.DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"))
+        );
+
+        telegramBot.sendTextMessage(chatId, successMessage);
+
+        log.info("Фотография успешно обработана. ID: {}, пользователь: {}",
+                savedImage.getId(), user.getTelegramId());
+    }
+
     /**
      * Проверка лимитов пользователя
      */
@@ -199,30 +264,53 @@ public class PhotoHandler {
     }
 
     /**
-     * Загрузить фотографию с серверов Telegram
+     * Ответ на повторную загрузку изображения
+     */
+    private void replyDuplicate(Long chatId, WolfImageSummary duplicate) {
+        log.info("Повторная загрузка изображения ID {} (статус {}) в чате {}",
+                duplicate.getId(), duplicate.getStatus(), chatId);
+
+        String message = switch (duplicate.getStatus()) {
+            case APPROVED -> String.format(
+                    "🐺 Эта картинка уже есть в коллекции (#%d). Спасибо, что делитесь!", duplicate.getId());
+            case PENDING -> "⏳ Эта картинка уже загружена и ожидает модерации.";
+            case BLOCKED -> "🚫 Эта картинка заблокирована модераторами и не может быть загружена.";
+            default -> "ℹ️ Эта картинка уже загружалась ранее.";
+        };
+        telegramBot.sendTextMessage(chatId, message);
+    }
+
+    /**
+     * Загрузить фотографию с серверов Telegram во временный файл хранилища.
+     * Размер проверяется и SHA-256 вычисляется по ходу загрузки, в памяти файл целиком не хранится
+     *
+     * @throws BlobTooLargeException если файл больше допустимого размера
      */
-    private byte[] downloadPhoto(PhotoSize photo) {
+    private StagedBlob downloadPhoto(PhotoSize photo) throws BlobTooLargeException {
         try {
             // Получаем информацию о файле
             GetFile getFile = GetFile.builder()
                     .fileId(photo.getFileId())
                     .build();
 
-            File file = telegramBot.execute(getFile);
-
-            // Формируем URL для загрузки
-            String fileUrl = "https://api.telegram.org/file/bot" +
-                    telegramBot.getBotToken() + "/" + file.getFilePath();
+            // getFile идет через очередь отправки: на него действуют глобальный лимит и повторы после 429
+            File file;
+            try {
+                file = telegramBot.enqueue(null, getFile, SendPriority.INTERACTIVE).join();
+            } catch (CompletionException e) {
+                log.error("Ошибка Telegram API при получении файла: ", e.getCause());
+                return null;
+            }
 
             // Загружаем файл
-            try (InputStream inputStream = new URL(fileUrl).openStream()) {
-                byte[] imageData = IOUtils.toByteArray(inputStream);
-                log.debug("Загружен файл размером {} байт", imageData.length);
-                return imageData;
+            try (InputStream inputStream = telegramTransport.openFile(file.getFilePath())) {
+                StagedBlob staged = imageService.stageImage(inputStream, botConfig.getMaxFileSize());
+                log.debug("Загружен файл размером {} байт", staged.size());
+                return staged;
             }
 
-        } catch (TelegramApiException e) {
-            log.error("Ошибка Telegram API при загрузке файла: ", e);
+        } catch (BlobTooLargeException e) {
+            throw e;
         } catch (IOException e) {
             log.error("Ошибка IO при загрузке файла: ", e);
         }
@@ -231,41 +319,27 @@ public class PhotoHandler {
     }
 
     /**
-     * Определить MIME тип изображения
+     * Вычислить перцептивный хеш изображения
+     *
+     * @return хеш или null, если изображение не удалось декодировать
      */
-    private String detectMimeType(byte[] imageData) {
-        if (imageData.length < 4) {
-            return "application/octet-stream";
-        }
-
-        // Проверяем сигнатуры файлов
-        if (imageData[0] == (byte) 0xFF && imageData[1] == (byte) 0xD8) {
-            return "image/jpeg";
-        }
-
-        if (imageData[0] == (byte) 0x89 && imageData[1] == (byte) 0x50 &&
-                imageData[2] == (byte) 0x4E && imageData[3] == (byte) 0x47) {
-            return "image/png";
-        }
-
-        if (imageData[0] == (byte) 0x52 && imageData[1] == (byte) 0x49 &&
-                imageData[2] == (byte) 0x46 && imageData[3] == (byte) 0x46 &&
-                imageData.length > 12 &&
-                imageData[8] == (byte) 0x57 && imageData[9] == (byte) 0x45 &&
-                imageData[10] == (byte) 0x42 && imageData[11] == (byte) 0x50) {
-            return "image/webp";
+    private Long computePerceptualHash(StagedBlob imageData) {
+        try (InputStream input = imageData.open()) {
+            OptionalLong hash = PerceptualHasher.compute(input);
+            return hash.isPresent() ? hash.getAsLong() : null;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось вычислить перцептивный хеш изображения: {}", e.getMessage());
+            return null;
         }
-
-        return "application/octet-stream";
     }
 
     /**
-     * Проверить, поддерживается ли тип изображения
+     * Прочитать формат и размеры изображения из заголовка файла
      */
-    private boolean isValidImageType(String mimeType) {
-        return mimeType.equals("image/jpeg") ||
-                mimeType.equals("image/png") ||
-                mimeType.equals("image/webp");
+    private Optional<ImageHeader> readHeader(StagedBlob imageData) throws IOException {
+        try (InputStream input = imageData.open()) {
+            return ImageHeaderParser.parse(input);
+        }
     }
 
     /**
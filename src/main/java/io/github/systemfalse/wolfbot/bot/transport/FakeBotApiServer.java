@@ -0,0 +1,583 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.bot.transport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Встроенный тестовый сервер Bot API для запуска бота без доступа к Telegram.
+ * <p>
+ * Поддерживает методы getUpdates, sendMessage, sendPhoto, getFile и загрузку файлов,
+ * остальные методы отвечают успехом. Может добавлять задержку и имитировать ответы
+ * 429 и 5xx (настройки {@code telegram.bot.fake-api.*}).
+ * Бот в этом процессе обращается к серверу сам, другой экземпляр можно направить на него
+ * через {@code telegram.bot.api-url=http://localhost:8081}.
+ * <p>
+ * Обновления для бота передаются через служебные адреса:
+ * <ul>
+ *     <li>{@code POST /fake/updates} — JSON обновления или массив обновлений</li>
+ *     <li>{@code POST /fake/message?chat_id=1&text=/start} — текстовое сообщение от пользователя</li>
+ *     <li>{@code POST /fake/photo?chat_id=1} — фотография от пользователя (тело запроса — изображение)</li>
+ *     <li>{@code GET /fake/stats} — количество вызовов методов API</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FakeBotApiServer {
+
+    private static final long BOT_ID = 1L;
+    private static final int MAX_POLL_TIMEOUT_SECONDS = 50;
+    private static final String ATTACH_PREFIX = "attach://";
+    private static final byte[] HEADERS_END = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final Pattern PART_NAME = Pattern.compile("\\bname=\"([^\"]*)\"");
+
+    private final BotConfig botConfig;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ConcurrentSkipListMap<Long, JsonNode> pendingUpdates = new ConcurrentSkipListMap<>();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> callCounts = new ConcurrentHashMap<>();
+    private final AtomicLong nextUpdateId = new AtomicLong(1);
+    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+    private final AtomicLong nextFileId = new AtomicLong(1);
+    private final Object updatesMonitor = new Object();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        BotConfig.FakeApi fakeApi = botConfig.getFakeApi();
+        if (!fakeApi.isEnabled()) {
+            return;
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), fakeApi.getPort()), 0);
+        server.createContext("/", this::handleExchange);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.start();
+        log.warn("Запущен тестовый сервер Bot API на порту {}. Бот не обращается к Telegram", getPort());
+    }
+
+    /**
+     * Порт, на котором слушает сервер
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Обработка входящего HTTP запроса
+     */
+    private void handleExchange(HttpExchange exchange) {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/fake/")) {
+                handleControl(exchange, path.substring("/fake/".length()));
+            } else if (path.startsWith("/file/bot")) {
+                handleFileDownload(exchange, path);
+            } else if (path.startsWith("/bot")) {
+                handleApiCall(exchange, path);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        } catch (Exception e) {
+            log.error("Ошибка тестового сервера Bot API: ", e);
+        }
+    }
+
+    /**
+     * Вызов метода Bot API: /bot{token}/{method}
+     */
+    private void handleApiCall(HttpExchange exchange, String path) throws IOException {
+        int slash = path.indexOf('/', "/bot".length());
+        if (slash < 0) {
+            writeError(exchange, 404, "Not Found", null);
+            return;
+        }
+        // Библиотека пишет имена методов в разном регистре (getupdates, sendmessage, getFile)
+        String method = path.substring(slash + 1).toLowerCase(Locale.ROOT);
+        callCounts.computeIfAbsent(method, key -> new LongAdder()).increment();
+
+        ApiRequest request = readRequest(exchange);
+
+        // Длинный опрос не задерживаем и не ломаем, чтобы сбои касались только исходящих запросов
+        if (!"getupdates".equals(method)) {
+            simulateLatency();
+            if (injectFault(exchange)) {
+                return;
+            }
+        }
+
+        JsonNode result = switch (method) {
+            case "getupdates" -> getUpdates(request.fields());
+            case "getme" -> getMe();
+            case "sendmessage" -> sendMessage(request.fields());
+            case "sendphoto" -> sendPhoto(request);
+            case "getfile" -> getFile(request.fields());
+            default -> BooleanNode.TRUE;
+        };
+
+        if (result == null) {
+            writeError(exchange, 400, "Bad Request: wrong file identifier", null);
+            return;
+        }
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("ok", true);
+        response.set("result", result);
+        writeJson(exchange, 200, response);
+    }
+
+    /**
+     * Метод getUpdates с поддержкой длинного опроса
+     */
+    private JsonNode getUpdates(ObjectNode fields) {
+        long offset = fields.path("offset").asLong(0);
+        int limit = fields.path("limit").asInt(0);
+        int timeout = Math.min(fields.path("timeout").asInt(0), MAX_POLL_TIMEOUT_SECONDS);
+
+        // Обновления до offset подтверждены ботом
+        if (offset > 0) {
+            pendingUpdates.headMap(offset).clear();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        synchronized (updatesMonitor) {
+            while (pendingUpdates.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(updatesMonitor, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        ArrayNode result = objectMapper.createArrayNode();
+        Iterator<JsonNode> updates = pendingUpdates.values().iterator();
+        int max = limit > 0 ? limit : 100;
+        while (updates.hasNext() && result.size() < max) {
+            result.add(updates.next());
+        }
+        return result;
+    }
+
+    private JsonNode getMe() {
+        ObjectNode bot = objectMapper.createObjectNode();
+        bot.put("id", BOT_ID);
+        bot.put("is_bot", true);
+        bot.put("first_name", "WolfBot");
+        bot.put("username", botConfig.getUsername());
+        return bot;
+    }
+
+    private JsonNode sendMessage(ObjectNode fields) {
+        ObjectNode message = createMessage(fields.path("chat_id").asLong(), BOT_ID);
+        message.put("text", fields.path("text").asText());
+        return message;
+    }
+
+    private JsonNode sendPhoto(ApiRequest request) {
+        String fileId;
+        String photo = request.fields().path("photo").asText();
+        // Библиотека передает файл отдельной частью и ссылается на нее как attach://{имя части}
+        byte[] uploaded = photo.startsWith(ATTACH_PREFIX)
+                ? request.files().get(photo.substring(ATTACH_PREFIX.length()))
+                : request.files().get("photo");
+        if (uploaded != null) {
+            fileId = storeFile(uploaded);
+        } else {
+            fileId = photo;
+            if (!files.containsKey(fileId)) {
+                return null;
+            }
+        }
+
+        ObjectNode message = createMessage(request.fields().path("chat_id").asLong(), BOT_ID);
+        message.putArray("photo").add(createPhotoSize(fileId));
+        if (request.fields().hasNonNull("caption")) {
+            message.put("caption", request.fields().path("caption").asText());
+        }
+        return message;
+    }
+
+    private JsonNode getFile(ObjectNode fields) {
+        String fileId = fields.path("file_id").asText();
+        byte[] data = files.get(fileId);
+        if (data == null) {
+            return null;
+        }
+
+        ObjectNode file = objectMapper.createObjectNode();
+        file.put("file_id", fileId);
+        file.put("file_unique_id", "unique_" + fileId);
+        file.put("file_size", data.length);
+        file.put("file_path", "photos/" + fileId);
+        return file;
+    }
+
+    /**
+     * Загрузка файла: /file/bot{token}/{file_path}
+     */
+    private void handleFileDownload(HttpExchange exchange, String path) throws IOException {
+        byte[] data = files.get(path.substring(path.lastIndexOf('/') + 1));
+        if (data == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        simulateLatency();
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(data);
+        }
+    }
+
+    /**
+     * Служебные адреса для передачи обновлений боту и получения статистики
+     */
+    private void handleControl(HttpExchange exchange, String command) throws IOException {
+        ApiRequest request = readRequest(exchange);
+        ObjectNode response = objectMapper.createObjectNode();
+
+        switch (command) {
+            case "updates" -> {
+                JsonNode body = objectMapper.readTree(request.body());
+                ArrayNode ids = response.putArray("update_ids");
+                if (body != null && body.isArray()) {
+                    body.forEach(update -> ids.add(addUpdate((ObjectNode) update)));
+                } else if (body != null && body.isObject()) {
+                    ids.add(addUpdate((ObjectNode) body));
+                }
+            }
+            case "message" -> {
+                long chatId = request.fields().path("chat_id").asLong();
+                ObjectNode message = createMessage(chatId, chatId);
+                message.put("text", request.fields().path("text").asText());
+                response.put("update_id", addUpdate(wrapMessage(message)));
+            }
+            case "photo" -> {
+                long chatId = request.fields().path("chat_id").asLong();
+                ObjectNode message = createMessage(chatId, chatId);
+                message.putArray("photo").add(createPhotoSize(storeFile(request.body())));
+                response.put("update_id", addUpdate(wrapMessage(message)));
+            }
+            case "stats" -> {
+                ObjectNode calls = response.putObject("calls");
+                callCounts.forEach((method, count) -> calls.put(method, count.sum()));
+                response.put("pending_updates", pendingUpdates.size());
+                response.put("files", files.size());
+            }
+            default -> {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+        }
+
+        writeJson(exchange, 200, response);
+    }
+
+    /**
+     * Добавить обновление в очередь getUpdates
+     *
+     * @return присвоенный ID обновления
+     */
+    private long addUpdate(ObjectNode update) {
+        long updateId;
+        if (update.hasNonNull("update_id")) {
+            updateId = update.get("update_id").asLong();
+            nextUpdateId.accumulateAndGet(updateId + 1, Math::max);
+        } else {
+            updateId = nextUpdateId.getAndIncrement();
+            update.put("update_id", updateId);
+        }
+
+        pendingUpdates.put(updateId, update);
+        synchronized (updatesMonitor) {
+            updatesMonitor.notifyAll();
+        }
+        return updateId;
+    }
+
+    private ObjectNode wrapMessage(ObjectNode message) {
+        ObjectNode update = objectMapper.createObjectNode();
+        update.set("message", message);
+        return update;
+    }
+
+    private ObjectNode createMessage(long chatId, long fromId) {
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("message_id", nextMessageId.getAndIncrement());
+        message.put("date", Instant.now().getEpochSecond());
+
+        ObjectNode chat = message.putObject("chat");
+        chat.put("id", chatId);
+        chat.put("type", chatId < 0 ? "group" : "private");
+
+        ObjectNode from = message.putObject("from");
+        from.put("id", fromId);
+        from.put("is_bot", fromId == BOT_ID);
+        from.put("first_name", fromId == BOT_ID ? "WolfBot" : "User" + fromId);
+        return message;
+    }
+
+    private ObjectNode createPhotoSize(String fileId) {
+        ObjectNode photo = objectMapper.createObjectNode();
+        photo.put("file_id", fileId);
+        photo.put("file_unique_id", "unique_" + fileId);
+        photo.put("width", 0);
+        photo.put("height", 0);
+        photo.put("file_size", files.get(fileId).length);
+        return photo;
+    }
+
+    private String storeFile(byte[] data) {
+        String fileId = "fake_file_" + nextFileId.getAndIncrement();
+        files.put(fileId, data);
+        return fileId;
+    }
+
+    /**
+     * Искусственная задержка ответа
+     */
+    private void simulateLatency() {
+        BotConfig.FakeApi fakeApi = botConfig.getFakeApi();
+        long delay = fakeApi.getLatency().toMillis();
+        long jitter = fakeApi.getLatencyJitter().toMillis();
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (delay <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Имитация ошибок Telegram API
+     *
+     * @return true, если вместо обычного ответа отправлена ошибка
+     */
+    private boolean injectFault(HttpExchange exchange) throws IOException {
+        BotConfig.FakeApi fakeApi = botConfig.getFakeApi();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (random.nextDouble() < fakeApi.getTooManyRequestsRate()) {
+            writeError(exchange, 429, "Too Many Requests: retry after " + fakeApi.getRetryAfter(),
+                    fakeApi.getRetryAfter());
+            return true;
+        }
+        if (random.nextDouble() < fakeApi.getServerErrorRate()) {
+            writeError(exchange, 502, "Bad Gateway", null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Прочитать параметры запроса из строки запроса и тела (JSON, form или multipart)
+     */
+    private ApiRequest readRequest(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        ObjectNode fields = objectMapper.createObjectNode();
+        Map<String, byte[]> uploadedFiles = new HashMap<>();
+
+        parseUrlEncoded(exchange.getRequestURI().getRawQuery(), fields);
+
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && body.length > 0) {
+            if (contentType.startsWith("multipart/form-data")) {
+                parseMultipart(body, extractBoundary(contentType), fields, uploadedFiles);
+            } else if (contentType.startsWith("application/json")) {
+                JsonNode json = objectMapper.readTree(body);
+                if (json != null && json.isObject()) {
+                    fields.setAll((ObjectNode) json);
+                }
+            } else if (contentType.startsWith("application/x-www-form-urlencoded")) {
+                parseUrlEncoded(new String(body, StandardCharsets.UTF_8), fields);
+            }
+        }
+
+        return new ApiRequest(fields, uploadedFiles, body);
+    }
+
+    private static void parseUrlEncoded(String data, ObjectNode fields) {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        for (String pair : data.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                fields.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static String extractBoundary(String contentType) {
+        int start = contentType.indexOf("boundary=");
+        if (start < 0) {
+            throw new IllegalArgumentException("В заголовке multipart запроса нет boundary");
+        }
+        String boundary = contentType.substring(start + "boundary=".length());
+        int end = boundary.indexOf(';');
+        if (end >= 0) {
+            boundary = boundary.substring(0, end);
+        }
+        return boundary.replace("\"", "").trim();
+    }
+
+    /**
+     * Разбор multipart/form-data: текстовые части попадают в поля, части с именем файла — в файлы
+     */
+    private static void parseMultipart(byte[] body, String boundary, ObjectNode fields, Map<String, byte[]> files) {
+        byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        int position = indexOf(body, delimiter, 0);
+
+        while (position >= 0) {
+            int partStart = position + delimiter.length;
+            // Завершающий разделитель имеет вид --boundary--
+            if (partStart + 1 >= body.length || (body[partStart] == '-' && body[partStart + 1] == '-')) {
+                return;
+            }
+            partStart += 2;
+
+            int next = indexOf(body, delimiter, partStart);
+            int headersEnd = indexOf(body, HEADERS_END, partStart);
+            if (next < 0 || headersEnd < 0 || headersEnd > next) {
+                return;
+            }
+
+            String headers = new String(body, partStart, headersEnd - partStart, StandardCharsets.UTF_8);
+            Matcher name = PART_NAME.matcher(headers);
+            if (name.find()) {
+                int contentStart = headersEnd + HEADERS_END.length;
+                byte[] content = Arrays.copyOfRange(body, contentStart, Math.max(contentStart, next - 2));
+                if (headers.contains("filename=")) {
+                    files.put(name.group(1), content);
+                } else {
+                    fields.put(name.group(1), new String(content, StandardCharsets.UTF_8));
+                }
+            }
+            position = next;
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void writeError(HttpExchange exchange, int status, String description, Integer retryAfter)
+            throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("ok", false);
+        response.put("error_code", status);
+        response.put("description", description);
+        if (retryAfter != null) {
+            response.putObject("parameters").put("retry_after", retryAfter);
+        }
+        writeJson(exchange, status, response);
+    }
+
+    private void writeJson(HttpExchange exchange, int status, JsonNode json) throws IOException {
+        byte[] data = objectMapper.writeValueAsBytes(json);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, data.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(data);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            log.info("Тестовый сервер Bot API остановлен");
+        }
+    }
+
+    /**
+     * Параметры запроса к тестовому серверу
+     */
+    private record ApiRequest(ObjectNode fields, Map<String, byte[]> files, byte[] body) {
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.bot.transport;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * HTTP транспорт к Bot API по адресу {@code telegram.bot.api-url}.
+ * Если включен встроенный тестовый сервер, все запросы направляются на него.
+ * Файлы загружаются через общий HTTP клиент, который переиспользует соединения
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HttpTelegramTransport implements TelegramTransport {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final BotConfig botConfig;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    @Override
+    public DefaultBotOptions createBotOptions() {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(getApiUrl() + "/bot");
+        log.info("Адрес Telegram Bot API: {}", getApiUrl());
+        return options;
+    }
+
+    @Override
+    public InputStream openFile(String filePath) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create(getApiUrl() + "/file/bot" + botConfig.getToken() + "/" + filePath))
+                .timeout(Duration.ofSeconds(botConfig.getMessageTimeout()))
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка файла прервана");
+        }
+
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Сервер вернул код " + response.statusCode() + " при загрузке файла");
+        }
+        return response.body();
+    }
+
+    /**
+     * Базовый адрес Bot API без завершающего слеша
+     */
+    private String getApiUrl() {
+        if (botConfig.getFakeApi().isEnabled()) {
+            return "http://localhost:" + botConfig.getFakeApi().getPort();
+        }
+        String apiUrl = botConfig.getApiUrl();
+        return apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.bot.transport;
+
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Транспорт для обращения к Telegram Bot API.
+ * Определяет, куда отправляются вызовы методов API и откуда загружаются файлы
+ */
+public interface TelegramTransport {
+
+    /**
+     * Создать настройки бота с адресом Bot API этого транспорта
+     */
+    DefaultBotOptions createBotOptions();
+
+    /**
+     * Открыть поток для загрузки файла с серверов Telegram
+     *
+     * @param filePath путь к файлу, полученный из метода getFile
+     */
+    InputStream openFile(String filePath) throws IOException;
+}
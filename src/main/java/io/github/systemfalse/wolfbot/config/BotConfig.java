@@ -26,12 +26,91 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 @ConfigurationProperties(prefix = "telegram.bot")
 @Data
 public class BotConfig {
     private String token;
     private String username;
+    private String apiUrl = "https://api.telegram.org";
     private long maxFileSize = 10 * 1024 * 1024;
     private int messageTimeout = 30;
+    private UpdateMode mode = UpdateMode.POLLING;
+    private Dispatcher dispatcher = new Dispatcher();
+    private Webhook webhook = new Webhook();
+    private Users users = new Users();
+    private Outbound outbound = new Outbound();
+    private FakeApi fakeApi = new FakeApi();
+
+    /**
+     * Способ получения обновлений от Telegram
+     */
+    public enum UpdateMode {
+        POLLING, WEBHOOK
+    }
+
+    /**
+     * Настройки параллельной обработки обновлений
+     */
+    @Data
+    public static class Dispatcher {
+        private int maxConcurrency = 64;
+        private int queueCapacity = 1000;
+        private double lowPriorityShare = 0.5;
+        private double highPriorityReserve = 0.1;
+        private Duration busyReplyInterval = Duration.ofSeconds(30);
+        private Duration offsetFlushInterval = Duration.ofSeconds(5);
+    }
+
+    /**
+     * Настройки приема обновлений через webhook
+     */
+    @Data
+    public static class Webhook {
+        private String url;
+        private String path = "/telegram/webhook";
+        private int port = 8443;
+        private String secretToken;
+        private boolean register = true;
+        private boolean dropPendingUpdates = false;
+    }
+
+    /**
+     * Настройки работы с пользователями
+     */
+    @Data
+    public static class Users {
+        private Duration activityFlushInterval = Duration.ofSeconds(10);
+        private int cacheCapacity = 4096;
+    }
+
+    /**
+     * Ограничения частоты исходящих запросов к Telegram API
+     */
+    @Data
+    public static class Outbound {
+        private double globalPerSecond = 30;
+        private double chatPerSecond = 1;
+        private double groupPerMinute = 20;
+        private double chatBurst = 3;
+        private int maxConcurrentRequests = 16;
+        private int maxRetries = 3;
+        private double bulkShare = 0.8;
+    }
+
+    /**
+     * Настройки встроенного тестового сервера Bot API для работы без сети
+     */
+    @Data
+    public static class FakeApi {
+        private boolean enabled = false;
+        private int port = 8081;
+        private Duration latency = Duration.ZERO;
+        private Duration latencyJitter = Duration.ZERO;
+        private double tooManyRequestsRate = 0;
+        private double serverErrorRate = 0;
+        private int retryAfter = 1;
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Настройки обработки изображений
+ */
+@Configuration
+@ConfigurationProperties(prefix = "wolfbot.images")
+@Data
+public class ImageConfig {
+    private int duplicateRejectDistance = 4;
+    private int duplicateFlagDistance = 10;
+    private int minDimension = 64;
+    private Cache cache = new Cache();
+    private Preview preview = new Preview();
+    private Normalization normalization = new Normalization();
+
+    /**
+     * Настройки кэша данных часто отправляемых изображений
+     */
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+        private boolean offHeap = false;
+    }
+
+    /**
+     * Настройки уменьшенных копий для модераторов
+     */
+    @Data
+    public static class Preview {
+        private boolean enabled = true;
+        private int maxDimension = 1280;
+        private float quality = 0.8f;
+        private int threads = 2;
+    }
+
+    /**
+     * Настройки нормализации одобренных изображений
+     */
+    @Data
+    public static class Normalization {
+        private boolean enabled = true;
+        private int maxDimension = 2560;
+        private float quality = 0.85f;
+        private boolean keepOriginal = false;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Настройки хранения файлов изображений
+ */
+@Configuration
+@ConfigurationProperties(prefix = "wolfbot.storage")
+@Data
+public class StorageConfig {
+    private String root = "./blobs";
+    private int migrationBatchSize = 20;
+    private int importBatchSize = 500;
+    private int importParallelism = 0;
+    private Retention retention = new Retention();
+
+    /**
+     * Что делать с данными изображений по истечении срока хранения
+     */
+    public enum RetentionMode {
+        DELETE, ARCHIVE
+    }
+
+    /**
+     * Настройки очистки данных отклоненных и заблокированных изображений
+     */
+    @Data
+    public static class Retention {
+        private boolean enabled = true;
+        private Duration interval = Duration.ofHours(1);
+        private Duration rejectedGracePeriod = Duration.ofDays(14);
+        private Duration blockedGracePeriod = Duration.ofDays(30);
+        private int batchSize = 100;
+        private RetentionMode mode = RetentionMode.DELETE;
+        private String archiveRoot = "./blobs-archive";
+    }
+}
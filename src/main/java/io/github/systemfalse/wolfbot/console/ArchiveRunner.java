@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.console;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.systemfalse.wolfbot.config.StorageConfig;
+import io.github.systemfalse.wolfbot.storage.BlobStore;
+import io.github.systemfalse.wolfbot.storage.StagedBlob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Резервное копирование одобренных изображений в zip архив и восстановление из него.
+ * <p>
+ * Запуск: {@code java -jar wolfbot.jar export-images <архив.zip>} и
+ * {@code java -jar wolfbot.jar restore-images <архив.zip>}. Архив содержит файлы изображений
+ * {@code images/<sha256>} и манифест {@code manifest.jsonl} с метаданными и контрольными суммами.
+ * Строки читаются курсором и записываются в архив по мере чтения, поэтому объем памяти
+ * не зависит от размера коллекции. Бот в этих режимах не запускается
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class ArchiveRunner implements CommandLineRunner {
+
+    private static final String MANIFEST_ENTRY = "manifest.jsonl";
+    private static final String IMAGES_DIR = "images/";
+    private static final int FETCH_SIZE = 100;
+
+    private static final String SELECT_APPROVED_SQL =
+            "SELECT id, file_name, blob_key, file_data, content_hash, perceptual_hash, mime_type, width, height, " +
+                    "bit_depth, uploaded_by, " +
+                    "uploaded_at, moderated_at, moderation_reason, send_count, last_sent " +
+                    "FROM wolf_images WHERE status = 'APPROVED' ORDER BY id";
+    private static final String SELECT_HASHES_SQL =
+            "SELECT content_hash FROM wolf_images WHERE content_hash IS NOT NULL";
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users (telegram_id, username, first_name, subscribed, registered_at) " +
+                    "SELECT ?, 'restored', 'Восстановлен', FALSE, CURRENT_TIMESTAMP " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM users WHERE telegram_id = ?)";
+    private static final String INSERT_IMAGE_SQL =
+            "INSERT INTO wolf_images (file_name, blob_key, content_hash, perceptual_hash, file_size, mime_type, " +
+                    "width, height, bit_depth, uploaded_by, status, uploaded_at, moderated_at, moderation_reason, " +
+                    "send_count, last_sent) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'APPROVED', ?, ?, ?, ?, ?)";
+    private static final int[] INSERT_IMAGE_TYPES = {
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.BIGINT, Types.VARCHAR,
+            Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.BIGINT, Types.TIMESTAMP, Types.TIMESTAMP,
+            Types.VARCHAR, Types.INTEGER, Types.TIMESTAMP};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+    private final StorageConfig storageConfig;
+    private final ApplicationContext applicationContext;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (args.length > 0 && ("export-images".equals(args[0]) || "restore-images".equals(args[0]))) {
+            int exitCode;
+            if (args.length < 2) {
+                System.err.println("Использование: " + args[0] + " <архив.zip>");
+                exitCode = 2;
+            } else if ("export-images".equals(args[0])) {
+                exitCode = exportArchive(Path.of(args[1])) ? 0 : 1;
+            } else {
+                exitCode = restoreArchive(Path.of(args[1])) ? 0 : 1;
+            }
+            System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+        }
+    }
+
+    /**
+     * Выгрузить одобренные изображения в архив.
+     * Архив пишется во временный файл и переименовывается после успешного завершения
+     *
+     * @return true, если все изображения выгружены
+     */
+    public boolean exportArchive(Path archive) throws IOException {
+        Path temp = archive.resolveSibling(archive.getFileName() + ".tmp");
+        Path manifest = Files.createTempFile("wolfbot-manifest", ".jsonl");
+        ExportStats stats = new ExportStats();
+        long started = System.nanoTime();
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(temp));
+             BufferedWriter manifestWriter = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+            // Изображения уже сжаты, повторное сжатие только тратит процессор
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            Map<String, Long> written = new HashMap<>();
+
+            jdbcTemplate.query(connection -> {
+                var statement = connection.prepareStatement(SELECT_APPROVED_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, (ResultSet rs) -> {
+                try {
+                    exportRow(rs, zip, manifestWriter, written, stats);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            // Манифест записывается последним: контрольные суммы известны только после выгрузки файлов
+            manifestWriter.flush();
+            zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+            Files.copy(manifest, zip);
+            zip.closeEntry();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            Files.deleteIfExists(manifest);
+        }
+        Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING);
+
+        log.info("Выгрузка завершена за {} с: изображений {}, {} МБ, пропущено {}. Архив: {}",
+                (System.nanoTime() - started) / 1_000_000_000, stats.exported, stats.bytes / 1024 / 1024,
+                stats.missing, archive);
+        return stats.missing == 0;
+    }
+
+    /**
+     * Записать в архив одно изображение и строку манифеста
+     */
+    private void exportRow(ResultSet rs, ZipOutputStream zip, BufferedWriter manifestWriter,
+                           Map<String, Long> written, ExportStats stats) throws SQLException, IOException {
+        long id = rs.getLong("id");
+        String blobKey = rs.getString("blob_key");
+
+        String entryName = IMAGES_DIR + (blobKey != null ? blobKey : "row-" + id);
+        String checksum;
+        long size;
+        Long writtenSize = written.get(entryName);
+        if (blobKey != null && writtenSize != null) {
+            // Тот же блоб уже записан для другой строки
+            checksum = blobKey;
+            size = writtenSize;
+        } else {
+            MessageDigest digest = sha256();
+            try (InputStream data = openPayload(rs, blobKey)) {
+                if (data == null) {
+                    log.warn("Нет данных изображения ID {}, пропущено", id);
+                    stats.missing++;
+                    return;
+                }
+                zip.putNextEntry(new ZipEntry(entryName));
+                size = new DigestInputStream(data, digest).transferTo(zip);
+                zip.closeEntry();
+            }
+            // Запись добавляется только после выгрузки, чтобы строки с отсутствующим блобом не ссылались на нее
+            written.put(entryName, size);
+            checksum = HexFormat.of().formatHex(digest.digest());
+            stats.bytes += size;
+        }
+
+        ManifestEntry entry = new ManifestEntry(entryName, checksum, size,
+                rs.getString("file_name"), rs.getString("content_hash"),
+                rs.getObject("perceptual_hash") != null ? rs.getLong("perceptual_hash") : null,
+                rs.getString("mime_type"), (Integer) rs.getObject("width"), (Integer) rs.getObject("height"),
+                (Integer) rs.getObject("bit_depth"), rs.getLong("uploaded_by"),
+                toText(rs.getTimestamp("uploaded_at")), toText(rs.getTimestamp("moderated_at")),
+                rs.getString("moderation_reason"), rs.getInt("send_count"), toText(rs.getTimestamp("last_sent")));
+        manifestWriter.write(objectMapper.writeValueAsString(entry));
+        manifestWriter.newLine();
+
+        stats.exported++;
+        if (stats.exported % 1000 == 0) {
+            log.info("Выгружено изображений: {} ({} МБ)", stats.exported, stats.bytes / 1024 / 1024);
+        }
+    }
+
+    /**
+     * Открыть данные изображения: из хранилища блобов или, для не перенесенных строк, из БД
+     */
+    private InputStream openPayload(ResultSet rs, String blobKey) throws SQLException, IOException {
+        if (blobKey != null) {
+            return blobStore.exists(blobKey) ? blobStore.open(blobKey) : null;
+        }
+        return rs.getBinaryStream("file_data");
+    }
+
+    /**
+     * Восстановить изображения из архива. Изображения, содержимое которых уже есть в БД, пропускаются.
+     * Файлы проверяются и записываются в хранилище параллельно, строки вставляются пачками
+     *
+     * @return true, если все изображения восстановлены без ошибок
+     */
+    public boolean restoreArchive(Path archive) throws IOException {
+        int batchSize = storageConfig.getImportBatchSize();
+        int parallelism = storageConfig.getImportParallelism() > 0
+                ? storageConfig.getImportParallelism() : Runtime.getRuntime().availableProcessors();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        seen.addAll(jdbcTemplate.queryForList(SELECT_HASHES_SQL, String.class));
+        Set<Long> owners = ConcurrentHashMap.newKeySet();
+        LongAdder restored = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long started = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (ZipFile zip = new ZipFile(archive.toFile());
+             BufferedReader manifest = new BufferedReader(new InputStreamReader(
+                     zip.getInputStream(requireEntry(zip, MANIFEST_ENTRY)), StandardCharsets.UTF_8))) {
+            List<CompletableFuture<RestoredRow>> window = new ArrayList<>(batchSize);
+            String line;
+            while ((line = manifest.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                ManifestEntry entry = objectMapper.readValue(line, ManifestEntry.class);
+                if (entry.contentHash() != null && !seen.add(entry.contentHash())) {
+                    skipped.increment();
+                    continue;
+                }
+                window.add(CompletableFuture.supplyAsync(() -> restoreEntry(zip, entry, failed), executor));
+                if (window.size() == batchSize) {
+                    insertRestored(window, owners, restored);
+                    window.clear();
+                    log.info("Восстановлено изображений: {}", restored.sum());
+                }
+            }
+            insertRestored(window, owners, restored);
+        } finally {
+            executor.shutdown();
+        }
+
+        log.info("Восстановление завершено за {} с: восстановлено {}, уже было {}, ошибок {}",
+                (System.nanoTime() - started) / 1_000_000_000, restored.sum(), skipped.sum(), failed.sum());
+        return failed.sum() == 0;
+    }
+
+    /**
+     * Проверить контрольную сумму файла из архива и записать его в хранилище
+     *
+     * @return параметры вставки строки вместе с блобом, который закрывается после вставки, или null при ошибке
+     */
+    private RestoredRow restoreEntry(ZipFile zip, ManifestEntry entry, LongAdder failed) {
+        StagedBlob staged = null;
+        try (InputStream data = zip.getInputStream(requireEntry(zip, entry.entry()))) {
+            staged = blobStore.stage(data, Long.MAX_VALUE);
+            if (!staged.key().equals(entry.sha256())) {
+                log.error("Контрольная сумма {} не совпадает с манифестом, запись пропущена", entry.entry());
+                failed.increment();
+                return null;
+            }
+            String key = staged.commit();
+            RestoredRow row = new RestoredRow(new Object[]{entry.fileName(), key,
+                    entry.contentHash() != null ? entry.contentHash() : key,
+                    entry.perceptualHash(), staged.size(), entry.mimeType(), entry.width(), entry.height(),
+                    entry.bitDepth(), entry.uploadedBy(),
+                    toTimestamp(entry.uploadedAt()), toTimestamp(entry.moderatedAt()), entry.moderationReason(),
+                    entry.sendCount(), toTimestamp(entry.lastSent())}, staged);
+            staged = null;
+            return row;
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось восстановить {}: {}", entry.entry(), e.getMessage());
+            failed.increment();
+            return null;
+        } finally {
+            close(staged);
+        }
+    }
+
+    /**
+     * Дождаться подготовки пачки и вставить ее строки одним пакетным запросом
+     */
+    private void insertRestored(List<CompletableFuture<RestoredRow>> window, Set<Long> owners, LongAdder restored) {
+        List<RestoredRow> prepared = new ArrayList<>(window.size());
+        for (CompletableFuture<RestoredRow> future : window) {
+            RestoredRow row = future.join();
+            if (row != null) {
+                prepared.add(row);
+            }
+        }
+        try {
+            List<Object[]> rows = new ArrayList<>(prepared.size());
+            for (RestoredRow row : prepared) {
+                long owner = (Long) row.values()[9];
+                if (owners.add(owner)) {
+                    jdbcTemplate.update(INSERT_USER_SQL, owner, owner);
+                }
+                rows.add(row.values());
+            }
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_IMAGE_SQL, rows, INSERT_IMAGE_TYPES);
+                restored.add(rows.size());
+            }
+        } finally {
+            // Блобы защищены от удаления, пока строки не вставлены
+            prepared.forEach(row -> close(row.blob()));
+        }
+    }
+
+    private static void close(StagedBlob blob) {
+        if (blob == null) {
+            return;
+        }
+        try {
+            blob.close();
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл блоба {}: {}", blob.key(), e.getMessage());
+        }
+    }
+
+    private static ZipEntry requireEntry(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            throw new IOException("В архиве нет записи " + name);
+        }
+        return entry;
+    }
+
+    private static String toText(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime().toString() : null;
+    }
+
+    private static Timestamp toTimestamp(String text) {
+        return text != null ? Timestamp.valueOf(LocalDateTime.parse(text)) : null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Параметры вставки восстановленного изображения и его блоб
+     */
+    private record RestoredRow(Object[] values, StagedBlob blob) {
+    }
+
+    /**
+     * Строка манифеста: файл в архиве, его контрольная сумма и метаданные изображения
+     */
+    record ManifestEntry(
+            String entry,
+            String sha256,
+            long size,
+            String fileName,
+            String contentHash,
+            Long perceptualHash,
+            String mimeType,
+            Integer width,
+            Integer height,
+            Integer bitDepth,
+            long uploadedBy,
+            String uploadedAt,
+            String moderatedAt,
+            String moderationReason,
+            int sendCount,
+            String lastSent
+    ) {
+    }
+
+    private static final class ExportStats {
+        long exported;
+        long missing;
+        long bytes;
+    }
+}
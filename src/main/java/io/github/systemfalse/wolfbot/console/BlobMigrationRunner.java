@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.console;
+
+import io.github.systemfalse.wolfbot.config.StorageConfig;
+import io.github.systemfalse.wolfbot.storage.BlobStore;
+import io.github.systemfalse.wolfbot.storage.StagedBlob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Перенос данных изображений из столбца file_data в хранилище блобов.
+ * <p>
+ * Запуск: {@code java -jar wolfbot.jar migrate-blobs}. Изображения обрабатываются пачками,
+ * после каждой пачки file_data очищается, поэтому перенос можно прервать и продолжить.
+ * Бот в этом режиме не запускается
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class BlobMigrationRunner implements CommandLineRunner {
+
+    private static final String SELECT_BATCH_SQL =
+            "SELECT id, file_data FROM wolf_images WHERE blob_key IS NULL AND file_data IS NOT NULL " +
+                    "AND id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_SQL =
+            "UPDATE wolf_images SET blob_key = ?, content_hash = ?, file_size = ?, file_data = NULL WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+    private final StorageConfig storageConfig;
+    private final ApplicationContext applicationContext;
+
+    @Override
+    public void run(String... args) {
+        if (args.length > 0 && "migrate-blobs".equals(args[0])) {
+            int exitCode = migrate() ? 0 : 1;
+            System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+        }
+    }
+
+    /**
+     * Перенести все изображения, данные которых хранятся в БД
+     *
+     * @return true, если все изображения перенесены без ошибок
+     */
+    public boolean migrate() {
+        int batchSize = storageConfig.getMigrationBatchSize();
+        long lastId = 0;
+        long migrated = 0;
+        long failed = 0;
+        long bytes = 0;
+        long started = System.nanoTime();
+
+        log.info("Начат перенос изображений в хранилище блобов, размер пачки {}", batchSize);
+
+        while (true) {
+            List<ImageRow> batch = jdbcTemplate.query(SELECT_BATCH_SQL,
+                    (rs, rowNum) -> new ImageRow(rs.getLong("id"), rs.getBytes("file_data")),
+                    lastId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            for (ImageRow row : batch) {
+                lastId = row.id();
+                try {
+                    try (StagedBlob staged = blobStore.stage(new ByteArrayInputStream(row.data()), row.data().length)) {
+                        String key = staged.commit();
+                        // Ключ блоба — SHA-256 содержимого, он же хеш для поиска дубликатов
+                        jdbcTemplate.update(UPDATE_SQL, key, key, row.data().length, row.id());
+                    }
+                    migrated++;
+                    bytes += row.data().length;
+                } catch (IOException | RuntimeException e) {
+                    failed++;
+                    log.error("Не удалось перенести изображение ID {}: ", row.id(), e);
+                }
+            }
+            log.info("Перенесено изображений: {} ({} МБ)", migrated, bytes / 1024 / 1024);
+        }
+
+        log.info("Перенос завершен за {} с: перенесено {}, ошибок {}, {} МБ. " +
+                        "Чтобы уменьшить файл БД, выполните SHUTDOWN COMPACT",
+                (System.nanoTime() - started) / 1_000_000_000, migrated, failed, bytes / 1024 / 1024);
+        return failed == 0;
+    }
+
+    private record ImageRow(long id, byte[] data) {
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.console;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import io.github.systemfalse.wolfbot.config.ImageConfig;
+import io.github.systemfalse.wolfbot.image.ImageHeader;
+import io.github.systemfalse.wolfbot.image.ImageHeaderParser;
+import io.github.systemfalse.wolfbot.config.StorageConfig;
+import io.github.systemfalse.wolfbot.image.PerceptualHasher;
+import io.github.systemfalse.wolfbot.model.ImageStatus;
+import io.github.systemfalse.wolfbot.storage.BlobStore;
+import io.github.systemfalse.wolfbot.storage.BlobTooLargeException;
+import io.github.systemfalse.wolfbot.storage.StagedBlob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Массовый импорт изображений из каталога.
+ * <p>
+ * Запуск: {@code java -jar wolfbot.jar import-images <каталог> [approved|pending] [telegramId владельца]}.
+ * Файлы обходятся пачками; внутри пачки формат и размеры (из заголовка), SHA-256 и перцептивный хеш
+ * вычисляются параллельно в пуле fork-join, дубликаты (в том числе уже загруженные в бот) пропускаются,
+ * строки вставляются одним пакетным запросом на пачку. Бот в этом режиме не запускается
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class ImageImportRunner implements CommandLineRunner {
+
+    private static final long DEFAULT_OWNER_ID = 0;
+    private static final String IMPORT_REASON = "Массовый импорт";
+
+    private static final String SELECT_HASHES_SQL =
+            "SELECT content_hash FROM wolf_images WHERE content_hash IS NOT NULL";
+    private static final String COUNT_USER_SQL = "SELECT COUNT(*) FROM users WHERE telegram_id = ?";
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users (telegram_id, username, first_name, subscribed, registered_at) " +
+                    "VALUES (?, 'import', 'Импорт', FALSE, CURRENT_TIMESTAMP)";
+    private static final String INSERT_IMAGE_SQL =
+            "INSERT INTO wolf_images (file_name, blob_key, content_hash, perceptual_hash, file_size, mime_type, " +
+                    "width, height, bit_depth, uploaded_by, status, uploaded_at, moderated_at, moderation_reason, " +
+                    "send_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+    private final StorageConfig storageConfig;
+    private final BotConfig botConfig;
+    private final ImageConfig imageConfig;
+    private final ApplicationContext applicationContext;
+
+    @Override
+    public void run(String... args) {
+        if (args.length > 0 && "import-images".equals(args[0])) {
+            ImageStatus status = args.length > 2 ? parseStatus(args[2]) : ImageStatus.PENDING;
+            Long ownerId = args.length > 3 ? parseOwnerId(args[3]) : Long.valueOf(DEFAULT_OWNER_ID);
+            int exitCode;
+            if (args.length < 2 || status == null || ownerId == null) {
+                System.err.println("Использование: import-images <каталог> [approved|pending] [telegramId владельца]");
+                exitCode = 2;
+            } else {
+                exitCode = importDirectory(Path.of(args[1]), status, ownerId) ? 0 : 1;
+            }
+            System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+        }
+    }
+
+    /**
+     * Статус импортируемых изображений из аргумента командной строки
+     *
+     * @return null, если указан не approved и не pending
+     */
+    private static ImageStatus parseStatus(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "approved" -> ImageStatus.APPROVED;
+            case "pending" -> ImageStatus.PENDING;
+            default -> {
+                System.err.println("Неизвестный статус: " + value);
+                yield null;
+            }
+        };
+    }
+
+    /**
+     * ID владельца импортируемых изображений из аргумента командной строки
+     *
+     * @return null, если аргумент не является числом
+     */
+    private static Long parseOwnerId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Некорректный telegramId владельца: " + value);
+            return null;
+        }
+    }
+
+    /**
+     * Импортировать все изображения из каталога и его подкаталогов
+     *
+     * @return true, если импорт прошел без ошибок
+     */
+    public boolean importDirectory(Path directory, ImageStatus status, long ownerId) {
+        if (status != ImageStatus.APPROVED && status != ImageStatus.PENDING) {
+            throw new IllegalArgumentException("Импортировать можно только в статусе APPROVED или PENDING");
+        }
+        ensureOwner(ownerId);
+
+        // Уже известные хеши: повторный импорт того же каталога ничего не добавит
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        seen.addAll(jdbcTemplate.queryForList(SELECT_HASHES_SQL, String.class));
+
+        int parallelism = storageConfig.getImportParallelism() > 0
+                ? storageConfig.getImportParallelism() : Runtime.getRuntime().availableProcessors();
+        int batchSize = storageConfig.getImportBatchSize();
+        Stats stats = new Stats();
+        long started = System.nanoTime();
+
+        log.info("Начат импорт изображений из {} в статусе {}, потоков {}, размер пачки {}",
+                directory, status, parallelism, batchSize);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> batch = new ArrayList<>(batchSize);
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                batch.add(file);
+                if (batch.size() == batchSize) {
+                    importBatch(pool, batch, status, ownerId, seen, stats);
+                    report(stats, started);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                importBatch(pool, batch, status, ownerId, seen, stats);
+            }
+        } catch (IOException e) {
+            log.error("Ошибка при обходе каталога {}: ", directory, e);
+            stats.failed.increment();
+        } finally {
+            pool.shutdown();
+        }
+
+        report(stats, started);
+        log.info("Импорт завершен: добавлено {}, дубликатов {}, пропущено {}, ошибок {}",
+                stats.imported.sum(), stats.duplicates.sum(), stats.skipped.sum(), stats.failed.sum());
+        return stats.failed.sum() == 0;
+    }
+
+    /**
+     * Подготовить файлы пачки параллельно и вставить их одним пакетным запросом
+     */
+    private void importBatch(ForkJoinPool pool, List<Path> batch, ImageStatus status, long ownerId,
+                             Set<String> seen, Stats stats) {
+        List<ImportedImage> prepared;
+        try {
+            prepared = pool.submit(() -> batch.parallelStream()
+                    .map(file -> prepare(file, seen, stats))
+                    .filter(Objects::nonNull)
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Импорт прерван", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка при подготовке пачки", e.getCause());
+        }
+        if (prepared.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp moderatedAt = status == ImageStatus.APPROVED ? now : null;
+        String reason = status == ImageStatus.APPROVED ? IMPORT_REASON : null;
+        List<Object[]> rows = new ArrayList<>(prepared.size());
+        for (ImportedImage image : prepared) {
+            rows.add(new Object[]{image.fileName(), image.key(), image.key(), image.perceptualHash(), image.size(),
+                    image.header().mimeType(), image.header().width(), image.header().height(),
+                    image.header().bitDepth(), ownerId, status.name(), now, moderatedAt, reason});
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_IMAGE_SQL, rows, new int[]{
+                    Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.BIGINT, Types.VARCHAR,
+                    Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.BIGINT, Types.VARCHAR, Types.TIMESTAMP,
+                    Types.TIMESTAMP, Types.VARCHAR});
+        } finally {
+            // Блобы защищены от удаления, пока строки не вставлены
+            prepared.forEach(image -> close(image.blob()));
+        }
+        stats.imported.add(prepared.size());
+        stats.bytes.add(prepared.stream().mapToLong(ImportedImage::size).sum());
+    }
+
+    /**
+     * Записать файл в хранилище, определить формат и вычислить хеши
+     *
+     * @return подготовленное изображение или null, если файл пропущен
+     */
+    private ImportedImage prepare(Path file, Set<String> seen, Stats stats) {
+        StagedBlob staged = null;
+        try (InputStream input = Files.newInputStream(file)) {
+            staged = blobStore.stage(input, botConfig.getMaxFileSize());
+            Optional<ImageHeader> header;
+            try (InputStream data = staged.open()) {
+                header = ImageHeaderParser.parse(data);
+            }
+            if (header.isEmpty() || header.get().shortSide() < imageConfig.getMinDimension()) {
+                stats.skipped.increment();
+                return null;
+            }
+            if (!seen.add(staged.key())) {
+                stats.duplicates.increment();
+                return null;
+            }
+
+            Long perceptualHash = null;
+            try (InputStream data = staged.open()) {
+                OptionalLong hash = PerceptualHasher.compute(data);
+                if (hash.isPresent()) {
+                    perceptualHash = hash.getAsLong();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Не удалось вычислить перцептивный хеш {}: {}", file, e.getMessage());
+            }
+
+            staged.commit();
+            ImportedImage image = new ImportedImage(file.getFileName().toString(), staged.key(), staged.size(),
+                    header.get(), perceptualHash, staged);
+            // Блоб закрывается после вставки пачки
+            staged = null;
+            return image;
+        } catch (BlobTooLargeException e) {
+            log.warn("Файл {} пропущен: размер больше {} байт", file, e.getLimit());
+            stats.skipped.increment();
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось импортировать файл {}: {}", file, e.getMessage());
+            stats.failed.increment();
+        } finally {
+            close(staged);
+        }
+        return null;
+    }
+
+    private static void close(StagedBlob blob) {
+        if (blob == null) {
+            return;
+        }
+        try {
+            blob.close();
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл блоба {}: {}", blob.key(), e.getMessage());
+        }
+    }
+
+    /**
+     * Создать пользователя-владельца импортированных изображений, если его нет
+     */
+    private void ensureOwner(long ownerId) {
+        Long count = jdbcTemplate.queryForObject(COUNT_USER_SQL, Long.class, ownerId);
+        if (count == null || count == 0) {
+            jdbcTemplate.update(INSERT_USER_SQL, ownerId);
+            log.info("Создан пользователь {} для импортированных изображений", ownerId);
+        }
+    }
+
+    private void report(Stats stats, long started) {
+        double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+        long processed = stats.imported.sum() + stats.duplicates.sum() + stats.skipped.sum() + stats.failed.sum();
+        log.info("Обработано файлов: {} ({} в секунду), добавлено {} ({} МБ, {} МБ/с)",
+                processed, Math.round(processed / seconds), stats.imported.sum(),
+                stats.bytes.sum() / 1024 / 1024, String.format("%.1f", stats.bytes.sum() / 1024.0 / 1024.0 / seconds));
+    }
+
+    private record ImportedImage(String fileName, String key, long size, ImageHeader header, Long perceptualHash,
+                                 StagedBlob blob) {
+    }
+
+    /**
+     * Счетчики импорта, обновляются из нескольких потоков
+     */
+    private static final class Stats {
+        final LongAdder imported = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.image;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * BK-дерево 64-битных хешей с расстоянием Хэмминга.
+ * <p>
+ * Поиск всех хешей в радиусе r обходит только поддеревья, расстояние до которых лежит
+ * в пределах [d - r, d + r], поэтому при малом радиусе просматривается небольшая часть дерева.
+ * Одному хешу может соответствовать несколько ID. Класс не потокобезопасен
+ */
+public final class BkTree {
+
+    private Node root;
+    private int size;
+
+    /**
+     * Добавить хеш с ID
+     */
+    public void add(long hash, long id) {
+        if (root == null) {
+            root = new Node(hash);
+            root.addId(id);
+            size++;
+            return;
+        }
+
+        Node node = root;
+        while (true) {
+            int distance = PerceptualHasher.distance(node.hash, hash);
+            if (distance == 0) {
+                if (node.addId(id)) {
+                    size++;
+                }
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                child = new Node(hash);
+                child.addId(id);
+                node.setChild(distance, child);
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Удалить ID из узла хеша. Сам узел остается в дереве, так как через него идут пути к потомкам
+     *
+     * @return true, если ID был в дереве
+     */
+    public boolean remove(long hash, long id) {
+        Node node = root;
+        while (node != null) {
+            int distance = PerceptualHasher.distance(node.hash, hash);
+            if (distance == 0) {
+                if (node.removeId(id)) {
+                    size--;
+                    return true;
+                }
+                return false;
+            }
+            node = node.child(distance);
+        }
+        return false;
+    }
+
+    /**
+     * Найти все ID с хешами на расстоянии не больше maxDistance
+     */
+    public List<Match> search(long hash, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = PerceptualHasher.distance(node.hash, hash);
+            if (distance <= maxDistance) {
+                for (int i = 0; i < node.idCount; i++) {
+                    matches.add(new Match(node.ids[i], node.hash, distance));
+                }
+            }
+
+            if (node.children != null) {
+                int from = Math.max(1, distance - maxDistance);
+                int to = Math.min(node.children.length - 1, distance + maxDistance);
+                for (int d = from; d <= to; d++) {
+                    if (node.children[d] != null) {
+                        pending.push(node.children[d]);
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Количество ID в дереве
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Найденный хеш
+     */
+    public record Match(long id, long hash, int distance) {
+    }
+
+    private static final class Node {
+        private final long hash;
+        private long[] ids = new long[1];
+        private int idCount;
+        // Потомки по расстоянию до этого узла, массив растет по мере необходимости
+        private Node[] children;
+
+        private Node(long hash) {
+            this.hash = hash;
+        }
+
+        private boolean addId(long id) {
+            for (int i = 0; i < idCount; i++) {
+                if (ids[i] == id) {
+                    return false;
+                }
+            }
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, idCount * 2);
+            }
+            ids[idCount++] = id;
+            return true;
+        }
+
+        private boolean removeId(long id) {
+            for (int i = 0; i < idCount; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--idCount];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Node child(int distance) {
+            return children != null && distance < children.length ? children[distance] : null;
+        }
+
+        private void setChild(int distance, Node child) {
+            if (children == null || distance >= children.length) {
+                children = children == null
+                        ? new Node[distance + 1]
+                        : Arrays.copyOf(children, distance + 1);
+            }
+            children[distance] = child;
+        }
+    }
+}
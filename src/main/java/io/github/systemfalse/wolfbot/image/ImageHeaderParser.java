@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.image;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Чтение формата, размеров и глубины цвета изображения из заголовка файла без декодирования пикселей.
+ * <p>
+ * Поддерживаются JPEG (маркеры SOF), PNG (блок IHDR) и WebP (блоки VP8, VP8L и VP8X).
+ * Читается только начало файла: для PNG и WebP — несколько десятков байт, для JPEG — сегменты
+ * до первого маркера SOF, которые пропускаются без чтения содержимого
+ */
+public final class ImageHeaderParser {
+
+    // JPEG с огромным EXIF не разбираем дальше этого предела
+    private static final long MAX_JPEG_SCAN = 1024 * 1024;
+
+    private ImageHeaderParser() {
+    }
+
+    /**
+     * Прочитать заголовок изображения
+     *
+     * @return заголовок или пустое значение, если формат не поддерживается или заголовок поврежден
+     */
+    public static Optional<ImageHeader> parse(byte[] imageData) {
+        try {
+            return parse(new ByteArrayInputStream(imageData));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Прочитать заголовок изображения из потока. Поток читается только до конца заголовка
+     *
+     * @return заголовок или пустое значение, если формат не поддерживается или заголовок поврежден
+     */
+    public static Optional<ImageHeader> parse(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(
+                input instanceof BufferedInputStream || input instanceof ByteArrayInputStream
+                        ? input : new BufferedInputStream(input, 512));
+        try {
+            int first = data.readUnsignedByte();
+            int second = data.readUnsignedByte();
+            if (first == 0xFF && second == 0xD8) {
+                return parseJpeg(data);
+            }
+            if (first == 0x89 && second == 'P') {
+                return parsePng(data);
+            }
+            if (first == 'R' && second == 'I') {
+                return parseWebp(data);
+            }
+            return Optional.empty();
+        } catch (EOFException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * JPEG: сегменты идут друг за другом, размеры записаны в первом сегменте SOF
+     */
+    private static Optional<ImageHeader> parseJpeg(DataInputStream data) throws IOException {
+        long scanned = 2;
+        while (scanned < MAX_JPEG_SCAN) {
+            int marker = data.readUnsignedByte();
+            scanned++;
+            if (marker != 0xFF) {
+                return Optional.empty();
+            }
+            // Перед маркером может быть любое количество байтов заполнения 0xFF
+            do {
+                marker = data.readUnsignedByte();
+                scanned++;
+            } while (marker == 0xFF);
+
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // Маркеры без данных
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // Конец файла или начало сжатых данных до SOF
+                return Optional.empty();
+            }
+
+            int length = data.readUnsignedShort();
+            if (length < 2) {
+                return Optional.empty();
+            }
+            if (isStartOfFrame(marker)) {
+                int precision = data.readUnsignedByte();
+                int height = data.readUnsignedShort();
+                int width = data.readUnsignedShort();
+                return header("image/jpeg", width, height, precision);
+            }
+            data.skipNBytes(length - 2);
+            scanned += length;
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        // C4 (DHT), C8 (JPG) и CC (DAC) не являются SOF
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    /**
+     * PNG: сигнатура, затем первым блоком обязательно идет IHDR
+     */
+    private static Optional<ImageHeader> parsePng(DataInputStream data) throws IOException {
+        byte[] rest = new byte[6];
+        data.readFully(rest);
+        if (rest[0] != 'N' || rest[1] != 'G' || rest[2] != '\r' || rest[3] != '\n' || rest[4] != 0x1A
+                || rest[5] != '\n') {
+            return Optional.empty();
+        }
+        data.readInt();
+        if (data.readInt() != 0x49484452) {
+            // Первый блок не IHDR
+            return Optional.empty();
+        }
+        int width = data.readInt();
+        int height = data.readInt();
+        int bitDepth = data.readUnsignedByte();
+        return header("image/png", width, height, bitDepth);
+    }
+
+    /**
+     * WebP: контейнер RIFF, размеры записаны в первом блоке
+     */
+    private static Optional<ImageHeader> parseWebp(DataInputStream data) throws IOException {
+        byte[] riff = new byte[14];
+        data.readFully(riff);
+        // riff[0..1] = "FF", riff[2..5] = размер, riff[6..9] = "WEBP", riff[10..13] = тип блока
+        if (riff[0] != 'F' || riff[1] != 'F' || riff[6] != 'W' || riff[7] != 'E' || riff[8] != 'B'
+                || riff[9] != 'P') {
+            return Optional.empty();
+        }
+        String chunk = new String(riff, 10, 4, StandardCharsets.US_ASCII);
+        data.skipNBytes(4);
+
+        byte[] payload = new byte[10];
+        data.readFully(payload);
+        return switch (chunk) {
+            case "VP8 " -> {
+                // Кадр ключевой: 3 байта тега, стартовый код 9D 01 2A, затем размеры по 14 бит
+                if ((payload[3] & 0xFF) != 0x9D || (payload[4] & 0xFF) != 0x01 || (payload[5] & 0xFF) != 0x2A) {
+                    yield Optional.empty();
+                }
+                yield header("image/webp", littleEndian(payload, 6, 2) & 0x3FFF,
+                        littleEndian(payload, 8, 2) & 0x3FFF, 8);
+            }
+            case "VP8L" -> {
+                if ((payload[0] & 0xFF) != 0x2F) {
+                    yield Optional.empty();
+                }
+                int bits = littleEndian(payload, 1, 4);
+                yield header("image/webp", (bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1, 8);
+            }
+            case "VP8X" -> header("image/webp", littleEndian(payload, 4, 3) + 1,
+                    littleEndian(payload, 7, 3) + 1, 8);
+            default -> Optional.empty();
+        };
+    }
+
+    private static int littleEndian(byte[] data, int offset, int length) {
+        int value = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static Optional<ImageHeader> header(String mimeType, int width, int height, int bitDepth) {
+        if (width <= 0 || height <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new ImageHeader(mimeType, width, height, bitDepth));
+    }
+}
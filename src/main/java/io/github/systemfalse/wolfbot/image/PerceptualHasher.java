@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.OptionalLong;
+
+/**
+ * Перцептивный хеш изображения (dHash).
+ * <p>
+ * Изображение уменьшается до 9x8 в оттенках серого, каждый бит хеша показывает, ярче ли пиксель
+ * своего правого соседа. Пережатые и уменьшенные копии одного изображения дают хеши,
+ * отличающиеся лишь в нескольких битах
+ */
+public final class PerceptualHasher {
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+    // Декодируем с прореживанием примерно до такого размера, чтобы не держать в памяти полное изображение
+    private static final int DECODE_TARGET = 256;
+
+    private PerceptualHasher() {
+    }
+
+    /**
+     * Вычислить хеш изображения
+     *
+     * @return хеш или пустое значение, если формат не поддерживается ImageIO
+     */
+    public static OptionalLong compute(byte[] imageData) throws IOException {
+        return compute(new ByteArrayInputStream(imageData));
+    }
+
+    /**
+     * Вычислить хеш изображения, читая его из потока
+     *
+     * @return хеш или пустое значение, если формат не поддерживается ImageIO
+     */
+    public static OptionalLong compute(InputStream imageData) throws IOException {
+        BufferedImage image = decodeSubsampled(imageData);
+        return image == null ? OptionalLong.empty() : OptionalLong.of(dHash(image));
+    }
+
+    /**
+     * Расстояние Хэмминга между хешами
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * Вычислить dHash декодированного изображения
+     */
+    public static long dHash(BufferedImage image) {
+        double[] luminance = averageLuminance(image);
+        long hash = 0;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                hash <<= 1;
+                if (luminance[y * HASH_WIDTH + x] > luminance[y * HASH_WIDTH + x + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Средняя яркость в каждой ячейке сетки 9x8
+     */
+    private static double[] averageLuminance(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] sums = new double[HASH_WIDTH * HASH_HEIGHT];
+        int[] counts = new int[HASH_WIDTH * HASH_HEIGHT];
+        int[] row = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellY = y * HASH_HEIGHT / height;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int cell = cellY * HASH_WIDTH + x * HASH_WIDTH / width;
+                sums[cell] += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                counts[cell]++;
+            }
+        }
+
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = counts[i] > 0 ? sums[i] / counts[i] : 0;
+        }
+        return sums;
+    }
+
+    /**
+     * Декодировать изображение с прореживанием строк и столбцов
+     */
+    private static BufferedImage decodeSubsampled(InputStream imageData) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageData)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int shortSide = Math.min(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, shortSide / DECODE_TARGET);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                return image.getWidth() >= HASH_WIDTH && image.getHeight() >= HASH_HEIGHT ? image : null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
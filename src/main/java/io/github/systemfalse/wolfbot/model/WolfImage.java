@@ -31,7 +31,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "wolf_images")
+@Table(name = "wolf_images", indexes = {
+        @Index(name = "idx_images_content_hash", columnList = "content_hash")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -45,9 +47,47 @@ public class WolfImage {
     @Column(name = "file_name", nullable = false)
     String fileName;
 
-    @Lob
-    @Column(name = "file_data", nullable = false)
-    byte[] fileData;
+    /**
+     * Ключ данных изображения в хранилище блобов
+     */
+    @Column(name = "blob_key", length = 64)
+    String blobKey;
+
+    /**
+     * Ключ исходного файла, если после нормализации оригинал сохранен
+     */
+    @Column(name = "original_blob_key", length = 64)
+    String originalBlobKey;
+
+    /**
+     * SHA-256 содержимого файла, используется для поиска повторных загрузок
+     */
+    @Column(name = "content_hash", length = 64)
+    String contentHash;
+
+    /**
+     * Перцептивный хеш (dHash) для поиска похожих изображений
+     */
+    @Column(name = "perceptual_hash")
+    Long perceptualHash;
+
+    /**
+     * file_id изображения в Telegram, позволяет отправлять его без повторной загрузки данных
+     */
+    @Column(name = "telegram_file_id")
+    String telegramFileId;
+
+    /**
+     * Ключ уменьшенной копии для модераторов или null, если превью не строилось
+     */
+    @Column(name = "preview_blob_key", length = 64)
+    String previewBlobKey;
+
+    /**
+     * file_id превью в Telegram
+     */
+    @Column(name = "preview_file_id")
+    String previewFileId;
 
     @Column(name = "file_size")
     long fileSize;
@@ -55,6 +95,21 @@ public class WolfImage {
     @Column(name = "mime_type", length = 100)
     String mimeType;
 
+    /**
+     * Размеры изображения в пикселях, прочитанные из заголовка файла
+     */
+    @Column(name = "width")
+    Integer width;
+
+    @Column(name = "height")
+    Integer height;
+
+    /**
+     * Глубина цвета, бит на канал
+     */
+    @Column(name = "bit_depth")
+    Integer bitDepth;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "uploaded_by", nullable = false)
     User uploadedBy;
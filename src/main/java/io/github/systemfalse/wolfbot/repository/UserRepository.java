@@ -84,13 +84,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
     void updateSubscriptionStatus(@Param("telegramId") Long telegramId,
                                   @Param("subscribed") Boolean subscribed);
 
-    /**
-     * Обновить время последней активности пользователя
-     */
-    @Modifying
-    @Query("UPDATE User u SET u.lastActive = CURRENT_TIMESTAMP WHERE u.telegramId = :telegramId")
-    void updateLastActivity(@Param("telegramId") Long telegramId);
-
     /**
      * Получить количество загруженных пользователем изображений
      */
@@ -24,27 +24,47 @@ package io.github.systemfalse.wolfbot.repository;
 
 import io.github.systemfalse.wolfbot.model.ImageStatus;
 import io.github.systemfalse.wolfbot.model.WolfImage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.awt.print.Pageable;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface WolfImageRepository extends JpaRepository<WolfImage, Long> {
 
+    String SELECT_SUMMARY = "SELECT wi.id AS id, wi.fileName AS fileName, wi.fileSize AS fileSize, " +
+            "wi.mimeType AS mimeType, wi.status AS status, wi.uploadedAt AS uploadedAt, " +
+            "wi.sendCount AS sendCount, wi.lastSent AS lastSent FROM WolfImage wi ";
+
     /**
      * Найти изображения по статусу с сортировкой по дате загрузки
      */
-    List<WolfImage> findByStatusOrderByUploadedAtAsc(ImageStatus status);
+    List<WolfImageSummary> findByStatusOrderByUploadedAtAsc(ImageStatus status);
 
     /**
      * Найти изображения по статусу с сортировкой по дате последней отправки
      */
-    List<WolfImage> findByStatusOrderByLastSentAsc(ImageStatus status);
+    List<WolfImageSummary> findByStatusOrderByLastSentAsc(ImageStatus status);
+
+    /**
+     * Время последней отправки изображений в указанном статусе
+     */
+    @Query("SELECT wi.id AS id, wi.lastSent AS lastSent FROM WolfImage wi WHERE wi.status = :status")
+    List<ImageSendState> findSendStates(@Param("status") ImageStatus status);
+
+    /**
+     * Найти изображение с тем же содержимым в одном из указанных статусов
+     */
+    Optional<WolfImageSummary> findFirstByContentHashAndStatusIn(String contentHash,
+                                                                 Collection<ImageStatus> statuses);
 
     /**
      * Количество изображений по статусу
@@ -64,33 +84,40 @@ public interface WolfImageRepository extends JpaRepository<WolfImage, Long> {
     /**
      * Найти изображения пользователя
      */
-    List<WolfImage> findByUploadedByTelegramIdOrderByUploadedAtDesc(Long userId);
+    List<WolfImageSummary> findByUploadedByTelegramIdOrderByUploadedAtDesc(Long userId);
 
     /**
      * Найти изображения для модерации (старые сначала)
      */
-    @Query("SELECT wi FROM WolfImage wi WHERE wi.status = 'PENDING' ORDER BY wi.uploadedAt ASC")
-    List<WolfImage> findImagesForModeration();
+    @Query(SELECT_SUMMARY + "WHERE wi.status = 'PENDING' ORDER BY wi.uploadedAt ASC")
+    List<WolfImageSummary> findImagesForModeration();
+
+    /**
+     * Количество изображений на модерации и дата загрузки самого старого из них
+     */
+    @Query("SELECT new io.github.systemfalse.wolfbot.repository.PendingSummary(" +
+            "COUNT(wi), MIN(wi.uploadedAt)) FROM WolfImage wi WHERE wi.status = 'PENDING'")
+    PendingSummary getPendingSummary();
 
     /**
      * Найти самые популярные изображения (по количеству отправок)
      */
-    @Query("SELECT wi FROM WolfImage wi WHERE wi.status = 'APPROVED' ORDER BY wi.sendCount DESC")
-    List<WolfImage> findMostPopularImages();
+    @Query(SELECT_SUMMARY + "WHERE wi.status = 'APPROVED' ORDER BY wi.sendCount DESC")
+    List<WolfImageSummary> findMostPopularImages();
 
     /**
      * Найти изображения, которые давно не отправлялись
      */
-    @Query("SELECT wi FROM WolfImage wi WHERE wi.status = 'APPROVED' AND " +
+    @Query(SELECT_SUMMARY + "WHERE wi.status = 'APPROVED' AND " +
             "(wi.lastSent IS NULL OR wi.lastSent < :staleTime) ORDER BY wi.lastSent ASC NULLS FIRST")
-    List<WolfImage> findStaleImages(@Param("staleTime") LocalDateTime staleTime);
+    List<WolfImageSummary> findStaleImages(@Param("staleTime") LocalDateTime staleTime);
 
     /**
      * Найти изображения по статусу и дате загрузки
      */
-    @Query("SELECT wi FROM WolfImage wi WHERE wi.status = :status AND wi.uploadedAt < :uploadedBefore")
-    List<WolfImage> findByStatusAndUploadedAtBefore(@Param("status") ImageStatus status,
-                                                    @Param("uploadedBefore") LocalDateTime uploadedBefore);
+    @Query(SELECT_SUMMARY + "WHERE wi.status = :status AND wi.uploadedAt < :uploadedBefore")
+    List<WolfImageSummary> findByStatusAndUploadedAtBefore(@Param("status") ImageStatus status,
+                                                           @Param("uploadedBefore") LocalDateTime uploadedBefore);
 
     /**
      * Подсчет всех изображений пользователя
@@ -100,6 +127,92 @@ public interface WolfImageRepository extends JpaRepository<WolfImage, Long> {
     /**
      * Найти последние изображения пользователя
      */
-    @Query("SELECT wi FROM WolfImage wi WHERE wi.uploadedBy.telegramId = :userId ORDER BY wi.uploadedAt DESC")
-    List<WolfImage> findLatestByUser(@Param("userId") Long userId, Pageable pageable);
+    @Query(SELECT_SUMMARY + "WHERE wi.uploadedBy.telegramId = :userId ORDER BY wi.uploadedAt DESC")
+    List<WolfImageSummary> findLatestByUser(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Сохранить file_id изображения в Telegram
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WolfImage wi SET wi.telegramFileId = :fileId WHERE wi.id = :id")
+    int updateTelegramFileId(@Param("id") Long id, @Param("fileId") String fileId);
+
+    /**
+     * Заменить данные изображения нормализованной версией.
+     * Прежний file_id относится к исходному файлу, поэтому сбрасывается
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WolfImage wi SET wi.blobKey = :blobKey, wi.originalBlobKey = :originalBlobKey, " +
+            "wi.fileSize = :fileSize, wi.mimeType = :mimeType, wi.fileName = :fileName, " +
+            "wi.width = :width, wi.height = :height, wi.bitDepth = :bitDepth, " +
+            "wi.telegramFileId = NULL WHERE wi.id = :id")
+    int updateNormalizedPayload(@Param("id") Long id, @Param("blobKey") String blobKey,
+                                @Param("originalBlobKey") String originalBlobKey,
+                                @Param("fileSize") long fileSize, @Param("mimeType") String mimeType,
+                                @Param("fileName") String fileName, @Param("width") Integer width,
+                                @Param("height") Integer height, @Param("bitDepth") Integer bitDepth);
+
+    /**
+     * Количество изображений, ссылающихся на блоб
+     */
+    @Query("SELECT COUNT(wi) FROM WolfImage wi WHERE wi.blobKey = :key OR wi.originalBlobKey = :key " +
+            "OR wi.previewBlobKey = :key")
+    long countBlobReferences(@Param("key") String key);
+
+    /**
+     * Сохранить ключ превью изображения
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WolfImage wi SET wi.previewBlobKey = :key WHERE wi.id = :id")
+    int updatePreviewBlobKey(@Param("id") Long id, @Param("key") String key);
+
+    /**
+     * Сохранить file_id превью изображения в Telegram
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WolfImage wi SET wi.previewFileId = :fileId WHERE wi.id = :id")
+    int updatePreviewFileId(@Param("id") Long id, @Param("fileId") String fileId);
+
+    /**
+     * Перцептивные хеши изображений в указанном статусе
+     */
+    @Query("SELECT wi.id AS id, wi.perceptualHash AS perceptualHash FROM WolfImage wi " +
+            "WHERE wi.status = :status AND wi.perceptualHash IS NOT NULL")
+    List<ImageHash> findPerceptualHashes(@Param("status") ImageStatus status);
+
+    /**
+     * ID изображений в указанном статусе без перцептивного хеша
+     */
+    @Query("SELECT wi.id FROM WolfImage wi WHERE wi.status = :status AND wi.perceptualHash IS NULL")
+    List<Long> findIdsWithoutPerceptualHash(@Param("status") ImageStatus status);
+
+    /**
+     * Сохранить перцептивный хеш изображения
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WolfImage wi SET wi.perceptualHash = :hash WHERE wi.id = :id")
+    int updatePerceptualHash(@Param("id") Long id, @Param("hash") Long hash);
+
+    /**
+     * Перцептивный хеш изображения
+     */
+    interface ImageHash {
+        Long getId();
+
+        Long getPerceptualHash();
+    }
+
+    /**
+     * Время последней отправки изображения
+     */
+    interface ImageSendState {
+        Long getId();
+
+        LocalDateTime getLastSent();
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.model.ImageStatus;
+import io.github.systemfalse.wolfbot.repository.WolfImageRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeSet;
+
+/**
+ * Очередь отправки одобренных изображений: сначала никогда не отправлявшиеся, затем давно отправленные.
+ * Строится при запуске и обновляется при смене статуса, поэтому выбор изображения не требует запроса к БД
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ApprovedImageRotation {
+
+    private static final Comparator<Entry> SEND_ORDER = Comparator
+            .comparing(Entry::lastSent, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(Entry::id);
+
+    private final WolfImageRepository wolfImageRepository;
+    private final TreeSet<Entry> queue = new TreeSet<>(SEND_ORDER);
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    @PostConstruct
+    public void load() {
+        List<WolfImageRepository.ImageSendState> states = wolfImageRepository.findSendStates(ImageStatus.APPROVED);
+        synchronized (this) {
+            queue.clear();
+            entries.clear();
+            for (WolfImageRepository.ImageSendState state : states) {
+                put(new Entry(state.getId(), state.getLastSent()));
+            }
+        }
+        log.info("Загружена очередь отправки: {} одобренных изображений", states.size());
+    }
+
+    /**
+     * Взять изображение, дольше всех ожидающее отправки, и переставить его в конец очереди
+     *
+     * @param sentAt время отправки
+     */
+    public synchronized OptionalLong next(LocalDateTime sentAt) {
+        Entry first = queue.pollFirst();
+        if (first == null) {
+            return OptionalLong.empty();
+        }
+        put(new Entry(first.id(), sentAt));
+        return OptionalLong.of(first.id());
+    }
+
+    /**
+     * Добавить изображение в очередь или обновить время его последней отправки
+     */
+    public synchronized void add(long imageId, LocalDateTime lastSent) {
+        remove(imageId);
+        put(new Entry(imageId, lastSent));
+    }
+
+    /**
+     * Вернуть изображению прежнее время отправки, если оно все еще в очереди
+     */
+    public synchronized void restore(long imageId, LocalDateTime lastSent) {
+        if (entries.containsKey(imageId)) {
+            add(imageId, lastSent);
+        }
+    }
+
+    /**
+     * Удалить изображение из очереди
+     */
+    public synchronized void remove(long imageId) {
+        Entry entry = entries.remove(imageId);
+        if (entry != null) {
+            queue.remove(entry);
+        }
+    }
+
+    /**
+     * Количество изображений в очереди
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.id(), entry);
+        queue.add(entry);
+    }
+
+    private record Entry(long id, LocalDateTime lastSent) {
+    }
+}
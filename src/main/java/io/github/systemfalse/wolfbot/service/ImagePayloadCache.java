@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.config.ImageConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Кэш данных изображений с ограничением по суммарному объему.
+ * <p>
+ * Одно и то же одобренное изображение рассылается многим подписчикам почти одновременно,
+ * поэтому недавно прочитанные данные держатся в памяти и вытесняются по давности использования (LRU).
+ * При включенном {@code off-heap} данные хранятся в direct буферах вне кучи.
+ * Одновременные промахи по одному изображению приводят к единственному чтению из хранилища.
+ * Загрузка, начатая до {@link #invalidate(long)}, не помещает прочитанные данные в кэш
+ */
+@Component
+@Slf4j
+public class ImagePayloadCache {
+
+    // Слишком большие изображения вытеснили бы весь кэш, их не кэшируем
+    private static final int MAX_ENTRY_SHARE = 4;
+
+    private final boolean enabled;
+    private final boolean offHeap;
+    private final long maxBytes;
+    private final LinkedHashMap<Long, ByteBuffer> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ConcurrentHashMap<Long, CompletableFuture<ByteBuffer>> loading = new ConcurrentHashMap<>();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+    private long usedBytes;
+
+    public ImagePayloadCache(ImageConfig imageConfig, MeterRegistry meterRegistry) {
+        ImageConfig.Cache config = imageConfig.getCache();
+        this.enabled = config.isEnabled() && config.getMaxSize().toBytes() > 0;
+        this.offHeap = config.isOffHeap();
+        this.maxBytes = config.getMaxSize().toBytes();
+
+        this.hitCounter = Counter.builder("wolfbot.images.cache.requests")
+                .description("Обращения к кэшу данных изображений")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("wolfbot.images.cache.requests")
+                .description("Обращения к кэшу данных изображений")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("wolfbot.images.cache.evictions")
+                .description("Изображения, вытесненные из кэша")
+                .register(meterRegistry);
+        Gauge.builder("wolfbot.images.cache.size", this, ImagePayloadCache::getUsedBytes)
+                .description("Объем данных в кэше")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("wolfbot.images.cache.entries", this, ImagePayloadCache::getEntryCount)
+                .description("Количество изображений в кэше")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Получить данные изображения из кэша или загрузить их
+     *
+     * @param loader загрузка данных при промахе; результат null не кэшируется
+     */
+    public byte[] get(long imageId, Supplier<byte[]> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        ByteBuffer buffer = getBuffer(imageId, loader);
+        if (buffer == null) {
+            return null;
+        }
+        byte[] data = new byte[buffer.capacity()];
+        buffer.get(0, data);
+        return data;
+    }
+
+    /**
+     * Открыть поток данных изображения из кэша, загрузив их при промахе.
+     * Поток читает буфер кэша напрямую, данные для каждого читателя не копируются
+     *
+     * @param size размер изображения, по нему решается, стоит ли его кэшировать
+     * @return поток или null, если кэш выключен, изображение слишком велико или не найдено
+     */
+    public InputStream open(long imageId, long size, Supplier<byte[]> loader) {
+        if (!enabled || !isCacheable(size)) {
+            return null;
+        }
+        ByteBuffer buffer = getBuffer(imageId, loader);
+        return buffer == null ? null : new BufferInputStream(buffer.duplicate());
+    }
+
+    private ByteBuffer getBuffer(long imageId, Supplier<byte[]> loader) {
+        ByteBuffer cached = lookup(imageId);
+        if (cached != null) {
+            hitCounter.increment();
+            return cached;
+        }
+        missCounter.increment();
+
+        CompletableFuture<ByteBuffer> load = new CompletableFuture<>();
+        CompletableFuture<ByteBuffer> existing = loading.putIfAbsent(imageId, load);
+        if (existing != null) {
+            // Изображение уже загружает другой поток
+            return await(existing);
+        }
+
+        try {
+            byte[] data = loader.get();
+            ByteBuffer buffer = data != null ? store(imageId, data, load) : null;
+            load.complete(buffer);
+            return buffer;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(imageId, load);
+        }
+    }
+
+    /**
+     * Удалить изображение из кэша, например после смены статуса.
+     * Текущая загрузка изображения отвязывается, и ее результат в кэш не попадет
+     */
+    public void invalidate(long imageId) {
+        synchronized (entries) {
+            loading.remove(imageId);
+            ByteBuffer removed = entries.remove(imageId);
+            if (removed != null) {
+                usedBytes -= removed.capacity();
+            }
+        }
+    }
+
+    public long getUsedBytes() {
+        synchronized (entries) {
+            return usedBytes;
+        }
+    }
+
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private ByteBuffer lookup(long imageId) {
+        synchronized (entries) {
+            return entries.get(imageId);
+        }
+    }
+
+    private boolean isCacheable(long size) {
+        return size <= maxBytes / MAX_ENTRY_SHARE;
+    }
+
+    /**
+     * Поместить данные в кэш, если загрузка не была отвязана вызовом {@link #invalidate(long)}
+     *
+     * @param load загрузка, которая прочитала данные
+     * @return буфер с данными; буфер не изменяется после записи, поэтому читается без блокировки
+     */
+    private ByteBuffer store(long imageId, byte[] data, CompletableFuture<ByteBuffer> load) {
+        if (!isCacheable(data.length)) {
+            return ByteBuffer.wrap(data);
+        }
+
+        ByteBuffer buffer;
+        if (offHeap) {
+            buffer = ByteBuffer.allocateDirect(data.length);
+            buffer.put(0, data);
+        } else {
+            // Массив получен от загрузчика и больше нигде не используется
+            buffer = ByteBuffer.wrap(data);
+        }
+
+        synchronized (entries) {
+            if (loading.get(imageId) != load) {
+                // Данные могли устареть, пока шло чтение
+                return buffer;
+            }
+            ByteBuffer previous = entries.put(imageId, buffer);
+            if (previous != null) {
+                usedBytes -= previous.capacity();
+            }
+            usedBytes += data.length;
+
+            // Вытесняем давно не использованные изображения
+            Iterator<Map.Entry<Long, ByteBuffer>> eldest = entries.entrySet().iterator();
+            while (usedBytes > maxBytes && eldest.hasNext()) {
+                usedBytes -= eldest.next().getValue().capacity();
+                eldest.remove();
+                evictionCounter.increment();
+            }
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer await(CompletableFuture<ByteBuffer> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Поток чтения из буфера кэша
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
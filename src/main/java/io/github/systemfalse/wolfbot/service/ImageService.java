@@ -24,65 +24,272 @@ package io.github.systemfalse.wolfbot.service;
 
 import io.github.systemfalse.wolfbot.model.ImageStatus;
 import io.github.systemfalse.wolfbot.model.WolfImage;
+import io.github.systemfalse.wolfbot.model.WolfImagePayload;
+import io.github.systemfalse.wolfbot.repository.UserRepository;
+import io.github.systemfalse.wolfbot.repository.WolfImagePayloadRepository;
 import io.github.systemfalse.wolfbot.repository.WolfImageRepository;
+import io.github.systemfalse.wolfbot.repository.WolfImageSummary;
+import io.github.systemfalse.wolfbot.storage.BlobStore;
+import io.github.systemfalse.wolfbot.storage.StagedBlob;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ImageService {
 
+    // Повторная загрузка отклоненного изображения допускается, оно попадет на модерацию заново
+    private static final EnumSet<ImageStatus> DUPLICATE_STATUSES =
+            EnumSet.of(ImageStatus.APPROVED, ImageStatus.PENDING, ImageStatus.BLOCKED);
+
     private final WolfImageRepository wolfImageRepository;
+    private final WolfImagePayloadRepository wolfImagePayloadRepository;
+    private final UserRepository userRepository;
+    private final BlobStore blobStore;
+    private final ImagePayloadCache imagePayloadCache;
+    private final ApprovedImageRotation approvedImageRotation;
+    private final TransactionTemplate transactionTemplate;
     private final Random random = new Random();
+    // Блокировки по хешу содержимого; ReentrantLock не закрепляет виртуальный поток на время запроса к БД
+    private final ReentrantLock[] contentLocks = IntStream.range(0, 64)
+            .mapToObj(i -> new ReentrantLock())
+            .toArray(ReentrantLock[]::new);
 
     /**
-     * Сохранить изображение
+     * Записать данные изображения из потока во временный файл хранилища
+     *
+     * @throws io.github.systemfalse.wolfbot.storage.BlobTooLargeException если данных больше {@code maxSize}
      */
-    @Transactional
-    public WolfImage saveImage(WolfImage image) {
-        WolfImage saved = wolfImageRepository.save(image);
+    public StagedBlob stageImage(InputStream imageData, long maxSize) throws IOException {
+        return blobStore.stage(imageData, maxSize);
+    }
+
+    /**
+     * Сохранить изображение, данные которого уже записаны во временный файл хранилища.
+     * Блоб закрывается вызывающим кодом после возврата, когда строка уже зафиксирована.
+     * <p>
+     * Поиск копии и вставка выполняются под блокировкой хеша содержимого до фиксации транзакции,
+     * поэтому одновременные загрузки одного файла не создают двух записей
+     *
+     * @param uploaderId Telegram ID загрузившего пользователя; для связи используется ссылка
+     *                   без загрузки пользователя из БД
+     * @throws DuplicateImageException если изображение с тем же содержимым уже загружено
+     */
+    public WolfImage saveImage(WolfImage image, long uploaderId, StagedBlob imageData)
+            throws IOException, DuplicateImageException {
+        ReentrantLock lock = contentLocks[Math.floorMod(imageData.key().hashCode(), contentLocks.length)];
+        lock.lock();
+        WolfImage saved;
+        try {
+            Optional<WolfImageSummary> duplicate = findDuplicate(imageData.key());
+            if (duplicate.isPresent()) {
+                throw new DuplicateImageException(duplicate.get());
+            }
+            image.setBlobKey(imageData.commit());
+            image.setFileSize(imageData.size());
+            saved = transactionTemplate.execute(status -> {
+                image.setUploadedBy(userRepository.getReferenceById(uploaderId));
+                return wolfImageRepository.save(image);
+            });
+        } finally {
+            lock.unlock();
+        }
         log.info("Сохранено изображение ID: {} от пользователя {}",
-                saved.getId(), saved.getUploadedBy().getTelegramId());
+                saved.getId(), uploaderId);
         return saved;
     }
 
+    /**
+     * Найти ранее загруженное изображение с тем же содержимым
+     */
+    public Optional<WolfImageSummary> findDuplicate(String contentHash) {
+        return wolfImageRepository.findFirstByContentHashAndStatusIn(contentHash, DUPLICATE_STATUSES);
+    }
+
     /**
      * Получить случайное одобренное изображение
      */
+    @Transactional
     public Optional<WolfImage> getRandomApprovedImage() {
-        List<WolfImage> approvedImages = wolfImageRepository.findByStatusOrderByLastSentAsc(ImageStatus.APPROVED);
+        // Выбираем изображение, которое никогда или давно не отправлялось, загружая только его
+        Optional<WolfImage> selected = Optional.empty();
+        while (selected.isEmpty()) {
+            OptionalLong nextId = approvedImageRotation.next(LocalDateTime.now());
+            if (nextId.isEmpty()) {
+                log.warn("Нет одобренных изображений для отправки");
+                return Optional.empty();
+            }
+            selected = wolfImageRepository.findById(nextId.getAsLong())
+                    .filter(image -> image.getStatus() == ImageStatus.APPROVED);
+            if (selected.isEmpty()) {
+                // Изображение удалено из БД в обход смены статуса
+                approvedImageRotation.remove(nextId.getAsLong());
+            }
+        }
+
+        // Отмечаем как отправленное; при откате изображение возвращается на прежнее место в очереди
+        WolfImage selectedImage = selected.get();
+        long selectedId = selectedImage.getId();
+        LocalDateTime previousLastSent = selectedImage.getLastSent();
+        Transactions.afterRollback(() -> approvedImageRotation.restore(selectedId, previousLastSent));
+        selectedImage.markAsSent();
+        wolfImageRepository.save(selectedImage);
+
+        log.debug("Выбрано изображение для отправки: ID {}", selectedImage.getId());
+        return selected;
+    }
+
+    /**
+     * Загрузить данные изображения. Недавно загруженные данные берутся из кэша
+     */
+    public byte[] loadImageData(WolfImage image) {
+        return imagePayloadCache.get(image.getId(), () -> readImageData(image));
+    }
 
-        if (approvedImages.isEmpty()) {
-            log.warn("Нет одобренных изображений для отправки");
-            return Optional.empty();
+    /**
+     * Прочитать данные изображения из хранилища
+     */
+    private byte[] readImageData(WolfImage image) {
+        if (image.getBlobKey() == null) {
+            // Изображение еще не перенесено из БД в хранилище блобов
+            return wolfImagePayloadRepository.findById(image.getId())
+                    .map(WolfImagePayload::getFileData)
+                    .orElse(null);
         }
+        try {
+            try {
+                return blobStore.read(image.getBlobKey());
+            } catch (NoSuchFileException e) {
+                if (!refreshBlobKey(image)) {
+                    throw e;
+                }
+                return blobStore.read(image.getBlobKey());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать данные изображения ID " + image.getId(), e);
+        }
+    }
 
-        // Выбираем изображение, которое давно не отправлялось
-        WolfImage selectedImage = approvedImages.get(0); // Первое в списке - давно не отправлялось
+    /**
+     * Перечитать ключ блоба из БД. После нормализации прежний блоб удаляется,
+     * а изображение могло быть загружено до этого
+     *
+     * @return true, если ключ изменился
+     */
+    private boolean refreshBlobKey(WolfImage image) {
+        Optional<String> current = wolfImageRepository.findById(image.getId()).map(WolfImage::getBlobKey);
+        if (current.isEmpty() || current.get().equals(image.getBlobKey())) {
+            return false;
+        }
+        log.debug("Изображение ID {} перенесено в блоб {}", image.getId(), current.get());
+        image.setBlobKey(current.get());
+        image.setTelegramFileId(null);
+        return true;
+    }
 
-        // Если есть изображения, которые никогда не отправлялись, предпочитаем их
-        Optional<WolfImage> neverSent = approvedImages.stream()
-                .filter(img -> img.getLastSent() == null)
-                .findFirst();
+    /**
+     * Открыть поток данных изображения для отправки.
+     * Часто отправляемые изображения читаются из кэша, остальные — напрямую из файла хранилища,
+     * поэтому данные не загружаются в память целиком для каждого получателя
+     */
+    public InputStream openImageData(WolfImage image) {
+        InputStream cached = imagePayloadCache.open(image.getId(), image.getFileSize(), () -> readImageData(image));
+        if (cached != null) {
+            return cached;
+        }
+        if (image.getBlobKey() == null) {
+            // Изображение еще не перенесено из БД в хранилище блобов
+            byte[] data = readImageData(image);
+            if (data == null) {
+                throw new IllegalStateException("Данные изображения ID " + image.getId() + " не найдены");
+            }
+            return new ByteArrayInputStream(data);
+        }
+        try {
+            return blobStore.open(image.getBlobKey());
+        } catch (NoSuchFileException e) {
+            if (refreshBlobKey(image)) {
+                return openBlob(image.getBlobKey(), image);
+            }
+            throw new UncheckedIOException("Данные изображения ID " + image.getId() + " не найдены", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть данные изображения ID " + image.getId(), e);
+        }
+    }
 
-        if (neverSent.isPresent()) {
-            selectedImage = neverSent.get();
+    /**
+     * Открыть поток данных превью изображения, а если превью нет — оригинала
+     */
+    public InputStream openPreviewData(WolfImage image) {
+        if (image.getPreviewBlobKey() == null) {
+            return openImageData(image);
         }
+        return openBlob(image.getPreviewBlobKey(), image);
+    }
 
-        // Отмечаем как отправленное
-        selectedImage.markAsSent();
-        wolfImageRepository.save(selectedImage);
+    private InputStream openBlob(String key, WolfImage image) {
+        try {
+            return blobStore.open(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть данные изображения ID " + image.getId(), e);
+        }
+    }
 
-        log.debug("Выбрано изображение для отправки: ID {}", selectedImage.getId());
-        return Optional.of(selectedImage);
+    /**
+     * Запомнить file_id, под которым Telegram сохранил отправленное превью
+     */
+    public void rememberPreviewFileId(WolfImage image, Message sent) {
+        String fileId = originalFileId(sent);
+        if (fileId != null && !fileId.equals(image.getPreviewFileId())) {
+            wolfImageRepository.updatePreviewFileId(image.getId(), fileId);
+            image.setPreviewFileId(fileId);
+            log.debug("Сохранен file_id превью изображения ID {}", image.getId());
+        }
+    }
+
+    /**
+     * file_id наибольшего размера фотографии в отправленном сообщении
+     */
+    private static String originalFileId(Message sent) {
+        if (sent == null || !sent.hasPhoto()) {
+            return null;
+        }
+        // Последний размер в списке — оригинал, остальные — уменьшенные копии
+        List<PhotoSize> sizes = sent.getPhoto();
+        return sizes.get(sizes.size() - 1).getFileId();
+    }
+
+    /**
+     * Запомнить file_id, под которым Telegram сохранил отправленное изображение
+     */
+    @Transactional
+    public void rememberFileId(WolfImage image, Message sent) {
+        String fileId = originalFileId(sent);
+        if (fileId != null && !fileId.equals(image.getTelegramFileId())) {
+            wolfImageRepository.updateTelegramFileId(image.getId(), fileId);
+            image.setTelegramFileId(fileId);
+            log.debug("Сохранен file_id изображения ID {}", image.getId());
+        }
     }
 
     /**
@@ -103,7 +310,7 @@ public class ImageService {
     /**
      * Получить изображения для модерации
      */
-    public List<WolfImage> getPendingImages() {
+    public List<WolfImageSummary> getPendingImages() {
         return wolfImageRepository.findByStatusOrderByUploadedAtAsc(ImageStatus.PENDING);
     }
 
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.config.ImageConfig;
+import io.github.systemfalse.wolfbot.image.ImageHeader;
+import io.github.systemfalse.wolfbot.image.ImageHeaderParser;
+import io.github.systemfalse.wolfbot.image.ImageVariants;
+import io.github.systemfalse.wolfbot.model.WolfImage;
+import io.github.systemfalse.wolfbot.repository.WolfImageRepository;
+import io.github.systemfalse.wolfbot.storage.BlobStore;
+import io.github.systemfalse.wolfbot.storage.StagedBlob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Построение вариантов изображений: уменьшенных копий для модераторов и нормализованных
+ * версий одобренных изображений. Работа выполняется в отдельном пуле потоков, чтобы
+ * декодирование больших изображений не занимало потоки обработки обновлений
+ */
+@Service
+@Slf4j
+public class ImageVariantService {
+
+    private static final String JPEG_MIME_TYPE = "image/jpeg";
+
+    private final ImageConfig.Preview config;
+    private final ImageConfig.Normalization normalization;
+    private final ImageService imageService;
+    private final BlobStore blobStore;
+    private final WolfImageRepository wolfImageRepository;
+    private final ImagePayloadCache imagePayloadCache;
+    private final ExecutorService executor;
+    private final Counter savedBytesCounter;
+
+    public ImageVariantService(ImageConfig imageConfig, ImageService imageService, BlobStore blobStore,
+                               WolfImageRepository wolfImageRepository, ImagePayloadCache imagePayloadCache,
+                               MeterRegistry meterRegistry) {
+        this.config = imageConfig.getPreview();
+        this.normalization = imageConfig.getNormalization();
+        this.imageService = imageService;
+        this.blobStore = blobStore;
+        this.wolfImageRepository = wolfImageRepository;
+        this.imagePayloadCache = imagePayloadCache;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, config.getThreads()),
+                Thread.ofPlatform().name("image-variant-", 0).daemon().factory());
+        this.savedBytesCounter = Counter.builder("wolfbot.images.normalized.saved")
+                .description("Объем, сэкономленный нормализацией одобренных изображений")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Построить превью изображения, если его еще нет.
+     * Ошибки построения не прерывают работу: изображение остается без превью
+     *
+     * @return изображение с заполненным ключом превью, если превью удалось построить
+     */
+    public CompletableFuture<WolfImage> preparePreview(WolfImage image) {
+        if (!config.isEnabled() || image.getPreviewBlobKey() != null || isSmallJpeg(image)) {
+            return CompletableFuture.completedFuture(image);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                buildPreview(image);
+            } catch (Exception e) {
+                log.warn("Не удалось построить превью изображения ID {}: {}", image.getId(), e.getMessage());
+            }
+            return image;
+        }, executor);
+    }
+
+    /**
+     * JPEG, который уже не больше превью: по размерам из заголовка превью не требуется
+     */
+    private boolean isSmallJpeg(WolfImage image) {
+        return "image/jpeg".equals(image.getMimeType()) && image.getWidth() != null && image.getHeight() != null
+                && Math.max(image.getWidth(), image.getHeight()) <= config.getMaxDimension();
+    }
+
+    private void buildPreview(WolfImage image) throws Exception {
+        byte[] original = imageService.loadImageData(image);
+        if (original == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        byte[] preview = ImageVariants.toJpeg(original, config.getMaxDimension(), config.getQuality());
+        if (preview == null || preview.length >= original.length) {
+            // Оригинал и так не больше превью, модераторам отправляется он
+            log.debug("Превью изображения ID {} не требуется", image.getId());
+            return;
+        }
+
+        String key;
+        try (StagedBlob staged = blobStore.stage(new ByteArrayInputStream(preview), preview.length)) {
+            key = staged.commit();
+            wolfImageRepository.updatePreviewBlobKey(image.getId(), key);
+        }
+        image.setPreviewBlobKey(key);
+        log.debug("Построено превью изображения ID {}: {} -> {} байт за {} мс", image.getId(),
+                original.length, preview.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Нормализовать одобренное изображение после фиксации текущей транзакции:
+     * уменьшить до допустимого размера, пересжать в JPEG без метаданных,
+     * если так данные станут меньше
+     */
+    public void normalizeApproved(WolfImage image) {
+        if (!normalization.isEnabled()) {
+            return;
+        }
+        Runnable task = () -> executor.execute(() -> {
+            try {
+                normalize(image);
+            } catch (Exception e) {
+                log.warn("Не удалось нормализовать изображение ID {}: {}", image.getId(), e.getMessage());
+            }
+        });
+
+        // Иначе фоновое обновление строки может опередить фиксацию решения модератора
+        Transactions.afterCommit(task);
+    }
+
+    private void normalize(WolfImage image) throws Exception {
+        String originalKey = image.getBlobKey();
+        if (originalKey == null) {
+            // Данные еще в БД, нормализуем после переноса в хранилище блобов
+            return;
+        }
+
+        byte[] original = blobStore.read(originalKey);
+        byte[] normalized = ImageVariants.toJpeg(original, normalization.getMaxDimension(), normalization.getQuality());
+        if (normalized == null || normalized.length >= original.length) {
+            log.debug("Изображение ID {} не требует нормализации", image.getId());
+            return;
+        }
+
+        String fileName = replaceExtension(image.getFileName());
+        Optional<ImageHeader> header = ImageHeaderParser.parse(normalized);
+        Integer width = header.map(ImageHeader::width).orElse(null);
+        Integer height = header.map(ImageHeader::height).orElse(null);
+        Integer bitDepth = header.map(ImageHeader::bitDepth).orElse(null);
+        String key;
+        try (StagedBlob staged = blobStore.stage(new ByteArrayInputStream(normalized), normalized.length)) {
+            key = staged.commit();
+            wolfImageRepository.updateNormalizedPayload(image.getId(), key,
+                    normalization.isKeepOriginal() ? originalKey : null, normalized.length, JPEG_MIME_TYPE, fileName,
+                    width, height, bitDepth);
+        }
+        image.setBlobKey(key);
+        image.setWidth(width);
+        image.setHeight(height);
+        image.setBitDepth(bitDepth);
+        image.setFileSize(normalized.length);
+        image.setMimeType(JPEG_MIME_TYPE);
+        image.setFileName(fileName);
+        image.setTelegramFileId(null);
+        imagePayloadCache.invalidate(image.getId());
+
+        // Отправки, начатые до нормализации, перечитают новый ключ, если прежний блоб уже удален
+        if (!normalization.isKeepOriginal()) {
+            blobStore.deleteIfUnreferenced(originalKey,
+                    () -> wolfImageRepository.countBlobReferences(originalKey) == 0);
+        }
+
+        long saved = original.length - normalized.length;
+        savedBytesCounter.increment(saved);
+        log.info("Нормализовано изображение ID {}: {} -> {} байт, сэкономлено {} КБ",
+                image.getId(), original.length, normalized.length, saved / 1024);
+    }
+
+    private static String replaceExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return (dot > 0 ? fileName.substring(0, dot) : fileName) + ".jpg";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
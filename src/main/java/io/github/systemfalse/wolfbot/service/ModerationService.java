@@ -22,27 +22,38 @@
 
 package io.github.systemfalse.wolfbot.service;
 
+import io.github.systemfalse.wolfbot.bot.SendPriority;
 import io.github.systemfalse.wolfbot.bot.TelegramBot;
+import io.github.systemfalse.wolfbot.bot.callback.CallbackAction;
+import io.github.systemfalse.wolfbot.bot.callback.CallbackCodec;
+import io.github.systemfalse.wolfbot.config.ImageConfig;
+import io.github.systemfalse.wolfbot.image.BkTree;
 import io.github.systemfalse.wolfbot.model.ImageStatus;
 import io.github.systemfalse.wolfbot.model.Moderator;
+import io.github.systemfalse.wolfbot.model.User;
 import io.github.systemfalse.wolfbot.model.WolfImage;
 import io.github.systemfalse.wolfbot.repository.ModeratorRepository;
+import io.github.systemfalse.wolfbot.repository.PendingSummary;
 import io.github.systemfalse.wolfbot.repository.WolfImageRepository;
+import io.github.systemfalse.wolfbot.repository.WolfImageSummary;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
-import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -53,6 +64,12 @@ public class ModerationService {
     private final ModeratorRepository moderatorRepository;
     private final WolfImageRepository wolfImageRepository;
     private final NotificationService notificationService;
+    private final ImageService imageService;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final ImagePayloadCache imagePayloadCache;
+    private final ImageVariantService imageVariantService;
+    private final ApprovedImageRotation approvedImageRotation;
+    private final ImageConfig imageConfig;
 
     public void initBot(TelegramBot telegramBot) {
         this.telegramBot = telegramBot;
@@ -61,12 +78,29 @@ public class ModerationService {
 
     /**
      * Отправить изображение на модерацию
+     *
+     * @param uploader пользователь, загрузивший изображение; его имя указывается в подписи
      */
     @Transactional
-    public void submitForModeration(WolfImage image) {
+    public void submitForModeration(WolfImage image, User uploader) {
         log.info("Отправка изображения на модерацию: ID {}, пользователь {}",
                 image.getId(), image.getUploadedBy().getTelegramId());
 
+        // Ищем среди одобренных изображений пережатые или уменьшенные копии
+        Optional<BkTree.Match> similar = findSimilarApproved(image);
+        if (similar.isPresent() && similar.get().distance() <= imageConfig.getDuplicateRejectDistance()) {
+            image.moderate(ImageStatus.REJECTED, null,
+                    String.format("Почти точная копия одобренного изображения #%d", similar.get().id()));
+            wolfImageRepository.save(image);
+            log.info("Изображение ID {} отклонено автоматически: копия изображения ID {} (расстояние {})",
+                    image.getId(), similar.get().id(), similar.get().distance());
+            return;
+        }
+        String similarityNote = similar
+                .map(match -> String.format("⚠️ <b>Похоже на одобренное изображение #%d</b> (отличий: %d из 64)\n\n",
+                        match.id(), match.distance()))
+                .orElse("");
+
         // Получаем всех активных модераторов
         List<Moderator> activeModerators = moderatorRepository.findByActiveTrueOrderByAddedAtDesc();
 
@@ -76,56 +110,83 @@ public class ModerationService {
             return;
         }
 
-        // Отправляем изображение всем активным модераторам
-        for (Moderator moderator : activeModerators) {
-            try {
-                sendImageToModerator(image, moderator);
-                log.debug("Изображение ID {} отправлено модератору {}",
-                        image.getId(), moderator.getTelegramId());
-            } catch (Exception e) {
-                log.error("Ошибка при отправке изображения ID {} модератору {}: ",
-                        image.getId(), moderator.getTelegramId(), e);
+        // Модераторам отправляется уменьшенная копия, она строится в фоновом пуле
+        imageVariantService.preparePreview(image)
+                .thenAccept(prepared -> sendToModerators(prepared, activeModerators,
+                        similarityNote + buildModerationCaption(prepared, uploader)));
+    }
+
+    /**
+     * Разослать изображение модераторам.
+     * Превью загружается в Telegram только первому модератору, остальным оно отправляется по file_id
+     */
+    private void sendToModerators(WolfImage image, List<Moderator> moderators, String caption) {
+        if (image.getPreviewBlobKey() == null) {
+            // Превью нет: отправляем оригинал по file_id, данные читаются только при необходимости
+            Supplier<InputStream> imageData = () -> imageService.openImageData(image);
+            for (Moderator moderator : moderators) {
+                sendImageToModerator(image, image.getTelegramFileId(), imageData, caption, moderator)
+                        .thenAccept(sent -> imageService.rememberFileId(image, sent));
             }
+        } else {
+            Supplier<InputStream> previewData = () -> imageService.openPreviewData(image);
+            Moderator first = moderators.get(0);
+            sendImageToModerator(image, image.getPreviewFileId(), previewData, caption, first)
+                    .thenAccept(sent -> imageService.rememberPreviewFileId(image, sent))
+                    .whenComplete((ignored, error) -> {
+                        for (Moderator moderator : moderators.subList(1, moderators.size())) {
+                            sendImageToModerator(image, image.getPreviewFileId(), previewData, caption,
+                                    moderator);
+                        }
+                    });
         }
 
-        log.info("Изображение ID {} отправлено {} модераторам",
-                image.getId(), activeModerators.size());
+        log.info("Изображение ID {} отправлено {} модераторам", image.getId(), moderators.size());
     }
 
     /**
-     * Отправить изображение конкретному модератору
+     * Найти ближайшее похожее одобренное изображение
      */
-    private void sendImageToModerator(WolfImage image, Moderator moderator) {
-        try {
-            // Формируем сообщение с информацией об изображении
-            String caption = buildModerationCaption(image);
-
-            // Создаем inline клавиатуру для модерации
-            InlineKeyboardMarkup keyboard = createModerationKeyboard(image.getId());
-
-            // Создаем объект для отправки фото
-            SendPhoto sendPhoto = SendPhoto.builder()
-                    .chatId(moderator.getTelegramId().toString())
-                    .photo(new InputFile(new ByteArrayInputStream(image.getFileData()),
-                            image.getFileName()))
-                    .caption(caption)
-                    .parseMode("HTML")
-                    .replyMarkup(keyboard)
-                    .build();
-
-            telegramBot.execute(sendPhoto);
-
-        } catch (Exception e) {
-            log.error("Ошибка при отправке изображения модератору {}: ",
-                    moderator.getTelegramId(), e);
-            throw new RuntimeException("Не удалось отправить изображение модератору", e);
+    private Optional<BkTree.Match> findSimilarApproved(WolfImage image) {
+        if (image.getPerceptualHash() == null) {
+            return Optional.empty();
         }
+        return nearDuplicateIndex.findNearest(image.getPerceptualHash(), imageConfig.getDuplicateFlagDistance())
+                .filter(match -> match.id() != image.getId());
+    }
+
+    /**
+     * Отправить изображение конкретному модератору
+     */
+    private CompletableFuture<Message> sendImageToModerator(WolfImage image, String fileId,
+                                                            Supplier<InputStream> imageData,
+                                                            String caption, Moderator moderator) {
+        // Создаем inline клавиатуру для модерации
+        InlineKeyboardMarkup keyboard = createModerationKeyboard(image.getId(), image.getPreviewBlobKey() != null);
+
+        return telegramBot.sendPhoto(moderator.getTelegramId(), SendPriority.INTERACTIVE, fileId,
+                () -> new InputFile(imageData.get(), image.getFileName()),
+                photo -> SendPhoto.builder()
+                        .chatId(moderator.getTelegramId().toString())
+                        .photo(photo)
+                        .caption(caption)
+                        .parseMode("HTML")
+                        .replyMarkup(keyboard)
+                        .build()
+        ).whenComplete((sent, error) -> {
+            if (error != null) {
+                log.error("Ошибка при отправке изображения ID {} модератору {}: ",
+                        image.getId(), moderator.getTelegramId(), error);
+            } else {
+                log.debug("Изображение ID {} отправлено модератору {}", image.getId(), moderator.getTelegramId());
+            }
+        });
     }
 
     /**
      * Создать подпись для изображения на модерации
      */
-    private String buildModerationCaption(WolfImage image) {
+    private String buildModerationCaption(WolfImage image, User uploader) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
 
         return String.format(
@@ -137,7 +198,7 @@ public class ModerationService {
                         "🗂 <b>Тип:</b> %s\n\n" +
                         "❓ <b>Одобрить изображение для рассылки?</b>",
                 image.getId(),
-                image.getUploadedBy().getDisplayName(),
+                uploader.getDisplayName(),
                 image.getUploadedAt().format(formatter),
                 image.getFileSize() / 1024.0,
                 image.getMimeType()
@@ -147,33 +208,39 @@ public class ModerationService {
     /**
      * Создать inline клавиатуру для модерации
      */
-    private InlineKeyboardMarkup createModerationKeyboard(Long imageId) {
+    private InlineKeyboardMarkup createModerationKeyboard(Long imageId, boolean preview) {
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
 
         // Первый ряд - Одобрить/Отклонить
         List<InlineKeyboardButton> row1 = new ArrayList<>();
         row1.add(InlineKeyboardButton.builder()
                 .text("✅ Одобрить")
-                .callbackData("moderate_approve_" + imageId)
+                .callbackData(CallbackCodec.encode(CallbackAction.APPROVE, imageId))
                 .build());
         row1.add(InlineKeyboardButton.builder()
                 .text("❌ Отклонить")
-                .callbackData("moderate_reject_" + imageId)
+                .callbackData(CallbackCodec.encode(CallbackAction.REJECT, imageId))
                 .build());
 
         // Второй ряд - Заблокировать
         List<InlineKeyboardButton> row2 = new ArrayList<>();
         row2.add(InlineKeyboardButton.builder()
                 .text("🚫 Заблокировать (нарушение)")
-                .callbackData("moderate_block_" + imageId)
+                .callbackData(CallbackCodec.encode(CallbackAction.BLOCK, imageId))
                 .build());
 
         // Третий ряд - Просмотр деталей
         List<InlineKeyboardButton> row3 = new ArrayList<>();
         row3.add(InlineKeyboardButton.builder()
                 .text("ℹ️ Подробности")
-                .callbackData("moderate_details_" + imageId)
+                .callbackData(CallbackCodec.encode(CallbackAction.DETAILS, imageId))
                 .build());
+        if (preview) {
+            row3.add(InlineKeyboardButton.builder()
+                    .text("🔎 Полный размер")
+                    .callbackData(CallbackCodec.encode(CallbackAction.FULL_SIZE, imageId))
+                    .build());
+        }
 
         keyboard.add(row1);
         keyboard.add(row2);
@@ -222,6 +289,7 @@ public class ModerationService {
         // Обновляем статус изображения
         image.moderate(decision, moderator, reason);
         wolfImageRepository.save(image);
+        onStatusChanged(image);
 
         // Увеличиваем счетчик модераций у модератора
         moderator.incrementModerationCount();
@@ -237,6 +305,36 @@ public class ModerationService {
                 imageId, decision);
     }
 
+    /**
+     * Обновить кэш, очередь отправки и индекс похожих изображений после фиксации смены статуса,
+     * одобренное изображение поставить в очередь на нормализацию
+     */
+    private void onStatusChanged(WolfImage image) {
+        long imageId = image.getId();
+        ImageStatus status = image.getStatus();
+        Long perceptualHash = image.getPerceptualHash();
+        LocalDateTime lastSent = image.getLastSent();
+
+        // При откате транзакции индексы не должны содержать изображение, которое не было одобрено
+        Transactions.afterCommit(() -> {
+            imagePayloadCache.invalidate(imageId);
+            if (status == ImageStatus.APPROVED) {
+                approvedImageRotation.add(imageId, lastSent);
+                if (perceptualHash != null) {
+                    nearDuplicateIndex.add(imageId, perceptualHash);
+                }
+            } else {
+                approvedImageRotation.remove(imageId);
+                if (perceptualHash != null) {
+                    nearDuplicateIndex.remove(imageId, perceptualHash);
+                }
+            }
+        });
+        if (status == ImageStatus.APPROVED) {
+            imageVariantService.normalizeApproved(image);
+        }
+    }
+
     /**
      * Уведомить пользователя о результате модерации
      */
@@ -323,6 +421,33 @@ public class ModerationService {
         }
     }
 
+    /**
+     * Отправить модератору оригинал изображения вместо превью
+     */
+    public void sendFullSizeImage(Long imageId, Long moderatorTelegramId) {
+        Optional<WolfImage> imageOpt = wolfImageRepository.findById(imageId);
+        if (imageOpt.isEmpty()) {
+            telegramBot.sendTextMessage(moderatorTelegramId,
+                    "❌ Изображение не найдено или уже удалено.");
+            return;
+        }
+
+        WolfImage image = imageOpt.get();
+        telegramBot.sendPhoto(moderatorTelegramId, SendPriority.INTERACTIVE, image.getTelegramFileId(),
+                () -> new InputFile(imageService.openImageData(image), image.getFileName()),
+                photo -> SendPhoto.builder()
+                        .chatId(moderatorTelegramId.toString())
+                        .photo(photo)
+                        .caption(String.format("🔎 Изображение #%d в полном размере (%.1f КБ)",
+                                image.getId(), image.getFileSize() / 1024.0))
+                        .build()
+        ).thenAccept(sent -> imageService.rememberFileId(image, sent)).exceptionally(e -> {
+            log.error("Ошибка при отправке оригинала изображения ID {} модератору {}: ",
+                    imageId, moderatorTelegramId, e);
+            return null;
+        });
+    }
+
     /**
      * Получить детальную информацию об изображении для модератора
      */
@@ -392,14 +517,14 @@ public class ModerationService {
     /**
      * Получить изображения, ожидающие модерации
      */
-    public List<WolfImage> getPendingImages() {
-        return wolfImageRepository.findByStatusOrderByUploadedAtAsc(ImageStatus.PENDING);
+    public List<WolfImageSummary> getPendingImages() {
+        return wolfImageRepository.findImagesForModeration();
     }
 
     /**
      * Получить старые изображения без модерации (старше N часов)
      */
-    public List<WolfImage> getStaleImages(int hoursOld) {
+    public List<WolfImageSummary> getStaleImages(int hoursOld) {
         LocalDateTime threshold = LocalDateTime.now().minusHours(hoursOld);
         return wolfImageRepository.findByStatusAndUploadedAtBefore(ImageStatus.PENDING, threshold);
     }
@@ -408,8 +533,8 @@ public class ModerationService {
      * Напомнить модераторам о необходимости модерации
      */
     public void sendModerationReminder() {
-        List<WolfImage> pendingImages = getPendingImages();
-        if (pendingImages.isEmpty()) {
+        PendingSummary pending = wolfImageRepository.getPendingSummary();
+        if (pending.count() == 0) {
             return;
         }
 
@@ -424,14 +549,14 @@ public class ModerationService {
                         "📸 Ожидает модерации: %d изображений\n" +
                         "🕐 Самое старое загружено: %s\n\n" +
                         "Пожалуйста, проверьте новые изображения в боте.",
-                pendingImages.size(),
-                pendingImages.getFirst().getUploadedAt().format(
+                pending.count(),
+                pending.oldestUploadedAt().format(
                         DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"))
         );
 
         for (Moderator moderator : activeModerators) {
             try {
-                telegramBot.sendTextMessage(moderator.getTelegramId(), reminderMessage);
+                telegramBot.sendTextMessage(moderator.getTelegramId(), reminderMessage, SendPriority.BULK);
             } catch (Exception e) {
                 log.error("Ошибка при отправке напоминания модератору {}: ",
                         moderator.getTelegramId(), e);
@@ -439,7 +564,7 @@ public class ModerationService {
         }
 
         log.info("Отправлены напоминания {} модераторам о {} изображениях",
-                activeModerators.size(), pendingImages.size());
+                activeModerators.size(), pending.count());
     }
 
     /**
@@ -477,6 +602,7 @@ public class ModerationService {
         if (systemModerator != null) {
             image.moderate(ImageStatus.APPROVED, systemModerator, reason);
             wolfImageRepository.save(image);
+            onStatusChanged(image);
 
             notifyUserAboutModerationResult(image);
             log.info("Изображение ID {} автоматически одобрено", imageId);
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.image.BkTree;
+import io.github.systemfalse.wolfbot.image.PerceptualHasher;
+import io.github.systemfalse.wolfbot.model.ImageStatus;
+import io.github.systemfalse.wolfbot.model.WolfImage;
+import io.github.systemfalse.wolfbot.repository.WolfImageRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс перцептивных хешей одобренных изображений для поиска почти точных копий.
+ * Строится при запуске и обновляется при одобрении изображений
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NearDuplicateIndex {
+
+    private final WolfImageRepository wolfImageRepository;
+    private final ImageService imageService;
+    private final BkTree tree = new BkTree();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void load() {
+        List<WolfImageRepository.ImageHash> hashes = wolfImageRepository.findPerceptualHashes(ImageStatus.APPROVED);
+        lock.writeLock().lock();
+        try {
+            for (WolfImageRepository.ImageHash hash : hashes) {
+                tree.add(hash.getPerceptualHash(), hash.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Загружен индекс похожих изображений: {} изображений", hashes.size());
+    }
+
+    /**
+     * Вычислить хеши одобренных изображений, загруженных до появления индекса
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMissingHashes() {
+        List<Long> ids = wolfImageRepository.findIdsWithoutPerceptualHash(ImageStatus.APPROVED);
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Thread.ofVirtual().name("perceptual-hash-backfill").start(() -> {
+            int indexed = 0;
+            for (Long id : ids) {
+                try {
+                    // Список ID устаревает, пока идет вычисление: изображение могли заблокировать
+                    Optional<WolfImage> image = wolfImageRepository.findById(id)
+                            .filter(candidate -> candidate.getStatus() == ImageStatus.APPROVED);
+                    if (image.isEmpty()) {
+                        continue;
+                    }
+                    OptionalLong hash = PerceptualHasher.compute(imageService.loadImageData(image.get()));
+                    if (hash.isPresent()) {
+                        wolfImageRepository.updatePerceptualHash(id, hash.getAsLong());
+                        add(id, hash.getAsLong());
+                        indexed++;
+                    }
+                } catch (Exception e) {
+                    log.warn("Не удалось вычислить перцептивный хеш изображения ID {}: {}", id, e.getMessage());
+                }
+            }
+            log.info("Вычислены перцептивные хеши {} из {} одобренных изображений", indexed, ids.size());
+        });
+    }
+
+    /**
+     * Добавить изображение в индекс
+     */
+    public void add(long imageId, long hash) {
+        lock.writeLock().lock();
+        try {
+            tree.add(hash, imageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удалить изображение из индекса
+     */
+    public void remove(long imageId, long hash) {
+        lock.writeLock().lock();
+        try {
+            tree.remove(hash, imageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Найти ближайшее одобренное изображение на расстоянии не больше maxDistance
+     */
+    public Optional<BkTree.Match> findNearest(long hash, int maxDistance) {
+        List<BkTree.Match> matches;
+        lock.readLock().lock();
+        try {
+            matches = tree.search(hash, maxDistance);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches.stream().min(Comparator.comparingInt(BkTree.Match::distance));
+    }
+
+    /**
+     * Количество изображений в индексе
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tree.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -22,6 +22,7 @@
 
 package io.github.systemfalse.wolfbot.service;
 
+import io.github.systemfalse.wolfbot.bot.SendPriority;
 import io.github.systemfalse.wolfbot.bot.TelegramBot;
 import io.github.systemfalse.wolfbot.model.User;
 import io.github.systemfalse.wolfbot.model.WolfImage;
@@ -30,9 +31,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Message;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -43,6 +46,7 @@ public class NotificationService {
 
     private TelegramBot telegramBot;
     private final UserRepository userRepository;
+    private final ImageService imageService;
 
     public void initBot(TelegramBot telegramBot) {
         this.telegramBot = telegramBot;
@@ -57,19 +61,18 @@ public class NotificationService {
 
         log.info("Отправка уведомления {} подписчикам", subscribers.size());
 
+        // Рассылка идет с массовым приоритетом и не задерживает ответы пользователям
+        List<CompletableFuture<Message>> deliveries = new ArrayList<>(subscribers.size());
+        for (User user : subscribers) {
+            deliveries.add(telegramBot.sendTextMessage(user.getTelegramId(), message, SendPriority.BULK));
+        }
+
         int successCount = 0;
         int errorCount = 0;
-
-        for (User user : subscribers) {
-            try {
-                telegramBot.sendTextMessage(user.getTelegramId(), message);
+        for (CompletableFuture<Message> delivery : deliveries) {
+            if (delivery.handle((sent, error) -> error == null).join()) {
                 successCount++;
-
-                // Небольшая пауза между отправками для избежания rate limit
-                Thread.sleep(50);
-            } catch (Exception e) {
-                log.error("Ошибка при отправке уведомления пользователю {}: ",
-                        user.getTelegramId(), e);
+            } else {
                 errorCount++;
             }
         }
@@ -81,23 +84,23 @@ public class NotificationService {
     /**
      * Отправить изображение пользователю
      */
-    public boolean sendImageToUser(Long userId, WolfImage image) {
-        try {
-            String caption = String.format(
-                    "🐺 <b>Картинка дня!</b>\n\n" +
-                            "📅 %s\n" +
-                            "💝 Наслаждайтесь!",
-                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd.MM.yyyy"))
-            );
-
-            telegramBot.sendPhoto(userId, image.getFileData(), caption);
-
-            log.debug("Изображение ID {} отправлено пользователю {}", image.getId(), userId);
-            return true;
-        } catch (Exception e) {
-            log.error("Ошибка при отправке изображения пользователю {}: ", userId, e);
-            return false;
-        }
+    public CompletableFuture<Boolean> sendImageToUser(Long userId, WolfImage image) {
+        String caption = String.format(
+                "🐺 <b>Картинка дня!</b>\n\n" +
+                        "📅 %s\n" +
+                        "💝 Наслаждайтесь!",
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd.MM.yyyy"))
+        );
+
+        return telegramBot.sendPhoto(userId, image.getTelegramFileId(), () -> imageService.openImageData(image), caption)
+                .handle((sent, error) -> {
+                    if (error != null) {
+                        return false;
+                    }
+                    imageService.rememberFileId(image, sent);
+                    log.debug("Изображение ID {} отправлено пользователю {}", image.getId(), userId);
+                    return true;
+                });
     }
 
     /**
@@ -114,16 +117,12 @@ public class NotificationService {
      * Отправить уведомление о статистике
      */
     public void sendDailyStats(Long adminId, String statsMessage) {
-        try {
-            String message = String.format(
-                    "📊 <b>Ежедневная статистика</b>\n\n%s\n\n📅 %s",
-                    statsMessage,
-                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"))
-            );
-
-            telegramBot.sendTextMessage(adminId, message);
-        } catch (Exception e) {
-            log.error("Ошибка при отправке статистики администратору {}: ", adminId, e);
-        }
+        String message = String.format(
+                "📊 <b>Ежедневная статистика</b>\n\n%s\n\n📅 %s",
+                statsMessage,
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"))
+        );
+
+        telegramBot.sendTextMessage(adminId, message);
     }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.config.StorageConfig;
+import io.github.systemfalse.wolfbot.model.ImageStatus;
+import io.github.systemfalse.wolfbot.repository.WolfImageRepository;
+import io.github.systemfalse.wolfbot.storage.BlobStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Очистка данных отклоненных и заблокированных изображений.
+ * <p>
+ * По истечении срока хранения (своего для каждого статуса) данные изображения удаляются
+ * или переносятся в архив, а строка остается: хеш содержимого продолжает блокировать
+ * повторные загрузки. Изображения обрабатываются небольшими пачками, каждая пачка —
+ * отдельный короткий запрос, поэтому таблица не блокируется надолго
+ */
+@Service
+@Slf4j
+public class RetentionService {
+
+    private static final String SELECT_BATCH_SQL =
+            "SELECT id, blob_key, preview_blob_key, original_blob_key, LENGTH(file_data) AS db_size " +
+                    "FROM wolf_images WHERE status = ? AND COALESCE(moderated_at, uploaded_at) < ? " +
+                    "AND (blob_key IS NOT NULL OR preview_blob_key IS NOT NULL " +
+                    "OR original_blob_key IS NOT NULL OR file_data IS NOT NULL) " +
+                    "ORDER BY id LIMIT ?";
+    private static final String PURGE_SQL =
+            "UPDATE wolf_images SET file_data = NULL, blob_key = NULL, preview_blob_key = NULL, " +
+                    "original_blob_key = NULL, preview_file_id = NULL WHERE id = ?";
+
+    private final StorageConfig.Retention config;
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+    private final WolfImageRepository wolfImageRepository;
+    private final ImagePayloadCache imagePayloadCache;
+    private final Counter reclaimedCounter;
+    private final Counter purgedCounter;
+
+    public RetentionService(StorageConfig storageConfig, JdbcTemplate jdbcTemplate, BlobStore blobStore,
+                            WolfImageRepository wolfImageRepository, ImagePayloadCache imagePayloadCache,
+                            MeterRegistry meterRegistry) {
+        this.config = storageConfig.getRetention();
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+        this.wolfImageRepository = wolfImageRepository;
+        this.imagePayloadCache = imagePayloadCache;
+        this.reclaimedCounter = Counter.builder("wolfbot.retention.reclaimed")
+                .description("Объем освобожденных данных изображений")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.purgedCounter = Counter.builder("wolfbot.retention.purged")
+                .description("Изображения, данные которых удалены по сроку хранения")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Очистить данные изображений с истекшим сроком хранения
+     */
+    @Scheduled(fixedDelayString = "${wolfbot.storage.retention.interval:1h}",
+            initialDelayString = "${wolfbot.storage.retention.interval:1h}")
+    public synchronized void purgeExpired() {
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        Result rejected = purge(ImageStatus.REJECTED, config.getRejectedGracePeriod());
+        Result blocked = purge(ImageStatus.BLOCKED, config.getBlockedGracePeriod());
+
+        long images = rejected.images() + blocked.images();
+        long bytes = rejected.bytes() + blocked.bytes();
+        if (images > 0) {
+            log.info("Очистка по сроку хранения за {} мс: отклоненных {}, заблокированных {}, освобождено {} КБ",
+                    (System.nanoTime() - started) / 1_000_000, rejected.images(), blocked.images(), bytes / 1024);
+        }
+    }
+
+    /**
+     * Очистить данные изображений в статусе, срок хранения которых истек
+     */
+    private Result purge(ImageStatus status, Duration gracePeriod) {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(gracePeriod));
+        long images = 0;
+        long bytes = 0;
+
+        while (true) {
+            List<PayloadRow> batch = jdbcTemplate.query(SELECT_BATCH_SQL,
+                    (rs, rowNum) -> new PayloadRow(rs.getLong("id"), rs.getString("blob_key"),
+                            rs.getString("preview_blob_key"), rs.getString("original_blob_key"),
+                            rs.getLong("db_size")),
+                    status.name(), cutoff, config.getBatchSize());
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            // Сначала убираем ссылки из БД, затем удаляем блобы, на которые больше никто не ссылается
+            List<Object[]> ids = new ArrayList<>(batch.size());
+            Set<String> keys = new LinkedHashSet<>();
+            for (PayloadRow row : batch) {
+                ids.add(new Object[]{row.id()});
+                addKey(keys, row.blobKey());
+                addKey(keys, row.previewBlobKey());
+                addKey(keys, row.originalBlobKey());
+                bytes += row.dbSize();
+            }
+            jdbcTemplate.batchUpdate(PURGE_SQL, ids);
+            batch.forEach(row -> imagePayloadCache.invalidate(row.id()));
+
+            for (String key : keys) {
+                bytes += release(key);
+            }
+            images += batch.size();
+            purgedCounter.increment(batch.size());
+
+            if (batch.size() < config.getBatchSize()) {
+                break;
+            }
+        }
+
+        reclaimedCounter.increment(bytes);
+        return new Result(images, bytes);
+    }
+
+    /**
+     * Удалить или заархивировать блоб, если на него не ссылается ни одно изображение
+     *
+     * @return освобожденный объем в байтах
+     */
+    private long release(String key) {
+        try {
+            if (!blobStore.exists(key) || wolfImageRepository.countBlobReferences(key) > 0) {
+                return 0;
+            }
+            long size = blobStore.size(key);
+            if (config.getMode() == StorageConfig.RetentionMode.ARCHIVE) {
+                archive(key);
+            }
+            // Ссылки проверяются повторно под блокировкой ключа: блоб могли загрузить заново
+            boolean deleted = blobStore.deleteIfUnreferenced(key,
+                    () -> wolfImageRepository.countBlobReferences(key) == 0);
+            return deleted ? size : 0;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось освободить блоб {}: {}", key, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Скопировать блоб в архивный каталог
+     */
+    private void archive(String key) throws IOException {
+        Path target = Path.of(config.getArchiveRoot()).resolve(key.substring(0, 2)).resolve(key);
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(key + ".tmp");
+        try (InputStream data = blobStore.open(key)) {
+            Files.copy(data, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void addKey(Set<String> keys, String key) {
+        if (key != null) {
+            keys.add(key);
+        }
+    }
+
+    private record PayloadRow(long id, String blobKey, String previewBlobKey, String originalBlobKey, long dbSize) {
+    }
+
+    private record Result(long images, long bytes) {
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отложенная запись времени последней активности пользователей.
+ * Отметки накапливаются в памяти и сбрасываются в БД одним пакетным запросом
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserActivityTracker {
+
+    private static final String UPDATE_LAST_ACTIVE_SQL =
+            "UPDATE users SET last_active = ? WHERE telegram_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<Long, LocalDateTime> pendingActivity = new ConcurrentHashMap<>();
+
+    /**
+     * Отметить активность пользователя
+     */
+    public void recordActivity(Long telegramId) {
+        pendingActivity.put(telegramId, LocalDateTime.now());
+    }
+
+    /**
+     * Записать накопленные отметки активности в БД
+     */
+    @Scheduled(fixedDelayString = "${telegram.bot.users.activity-flush-interval:10s}")
+    public synchronized void flush() {
+        if (pendingActivity.isEmpty()) {
+            return;
+        }
+
+        Map<Long, LocalDateTime> snapshot = new HashMap<>(pendingActivity.size());
+        for (Long telegramId : pendingActivity.keySet()) {
+            LocalDateTime lastActive = pendingActivity.remove(telegramId);
+            if (lastActive != null) {
+                snapshot.put(telegramId, lastActive);
+            }
+        }
+
+        List<Object[]> batch = new ArrayList<>(snapshot.size());
+        snapshot.forEach((telegramId, lastActive) ->
+                batch.add(new Object[]{Timestamp.valueOf(lastActive), telegramId}));
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_ACTIVE_SQL, batch);
+            log.debug("Обновлено время активности {} пользователей", batch.size());
+        } catch (Exception e) {
+            log.error("Ошибка при записи активности пользователей, повтор при следующем сбросе: ", e);
+            // Возвращаем отметки, не затирая более свежие
+            snapshot.forEach((telegramId, lastActive) -> pendingActivity.merge(telegramId, lastActive,
+                    (current, failed) -> current.isAfter(failed) ? current : failed));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
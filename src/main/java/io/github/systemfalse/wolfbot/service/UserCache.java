@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import io.github.systemfalse.wolfbot.model.User;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный кэш пользователей с прямым отображением telegramId на ячейку.
+ * При коллизии новая запись вытесняет старую, поэтому размер кэша никогда не растет.
+ * <p>
+ * Версия ячейки увеличивается при каждом изменении пользователя, поэтому данные, прочитанные
+ * из БД до изменения, не попадут в кэш после него
+ */
+@Component
+public class UserCache {
+
+    private final AtomicReferenceArray<CachedUser> slots;
+    private final AtomicLongArray versions;
+    private final int indexShift;
+
+    public UserCache(BotConfig botConfig) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(botConfig.getUsers().getCacheCapacity(), 2) - 1);
+        this.slots = new AtomicReferenceArray<>(1 << bits);
+        this.versions = new AtomicLongArray(1 << bits);
+        this.indexShift = 64 - bits;
+    }
+
+    /**
+     * Получить пользователя из кэша
+     */
+    public CachedUser get(long telegramId) {
+        CachedUser cached = slots.get(index(telegramId));
+        return cached != null && cached.telegramId() == telegramId ? cached : null;
+    }
+
+    /**
+     * Получить версию ячейки пользователя. Читается до загрузки пользователя из БД
+     */
+    public long version(long telegramId) {
+        return versions.get(index(telegramId));
+    }
+
+    /**
+     * Поместить пользователя в кэш, если ячейка не менялась с момента получения версии
+     *
+     * @return true, если пользователь помещен в кэш
+     */
+    public synchronized boolean put(User user, long version) {
+        int index = index(user.getTelegramId());
+        if (versions.get(index) != version) {
+            return false;
+        }
+        slots.set(index, CachedUser.of(user));
+        return true;
+    }
+
+    /**
+     * Обновить статус подписки закэшированного пользователя.
+     * Вызывается после фиксации изменения в БД
+     */
+    public synchronized void updateSubscription(long telegramId, boolean subscribed) {
+        int index = index(telegramId);
+        versions.incrementAndGet(index);
+        CachedUser cached = slots.get(index);
+        if (cached != null && cached.telegramId() == telegramId) {
+            slots.set(index, cached.withSubscribed(subscribed));
+        }
+    }
+
+    /**
+     * Удалить пользователя из кэша
+     */
+    public synchronized void evict(long telegramId) {
+        int index = index(telegramId);
+        versions.incrementAndGet(index);
+        CachedUser cached = slots.get(index);
+        if (cached != null && cached.telegramId() == telegramId) {
+            slots.set(index, null);
+        }
+    }
+
+    private int index(long telegramId) {
+        // Фибоначчиево хеширование равномерно распределяет последовательные ID
+        return (int) ((telegramId * 0x9E3779B97F4A7C15L) >>> indexShift);
+    }
+
+    /**
+     * Неизменяемый снимок пользователя
+     */
+    public record CachedUser(
+            long telegramId,
+            String username,
+            String firstName,
+            String lastName,
+            boolean subscribed,
+            LocalDateTime registeredAt
+    ) {
+        static CachedUser of(User user) {
+            return new CachedUser(user.getTelegramId(), user.getUsername(), user.getFirstName(),
+                    user.getLastName(), user.isSubscribed(), user.getRegisteredAt());
+        }
+
+        CachedUser withSubscribed(boolean subscribed) {
+            return new CachedUser(telegramId, username, firstName, lastName, subscribed, registeredAt);
+        }
+
+        /**
+         * Совпадают ли данные профиля с данными из Telegram
+         */
+        public boolean matches(org.telegram.telegrambots.meta.api.objects.User telegramUser) {
+            return Objects.equals(username, telegramUser.getUserName())
+                    && Objects.equals(firstName, telegramUser.getFirstName())
+                    && Objects.equals(lastName, telegramUser.getLastName());
+        }
+
+        /**
+         * Создать копию пользователя только для чтения. Копия не содержит всех полей сущности,
+         * поэтому не сохраняется в БД и не используется в связях других сущностей
+         */
+        public User toUser() {
+            return User.builder()
+                    .telegramId(telegramId)
+                    .username(username)
+                    .firstName(firstName)
+                    .lastName(lastName)
+                    .subscribed(subscribed)
+                    .registeredAt(registeredAt)
+                    .build();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -41,19 +42,40 @@ import java.util.Optional;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final UserActivityTracker userActivityTracker;
+    private final UserCache userCache;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Найти или создать пользователя
      */
-    @Transactional
     public User findOrCreateUser(org.telegram.telegrambots.meta.api.objects.User telegramUser) {
+        // Если профиль не менялся, обходимся без обращения к БД
+        UserCache.CachedUser cached = userCache.get(telegramUser.getId());
+        if (cached != null && cached.matches(telegramUser)) {
+            return cached.toUser();
+        }
+
+        // Версия читается до загрузки, чтобы устаревшие данные не вытеснили более новые
+        long version = userCache.version(telegramUser.getId());
+        User user = transactionTemplate.execute(status -> loadOrCreateUser(telegramUser));
+        userCache.put(user, version);
+        return user;
+    }
+
+    /**
+     * Загрузить пользователя из БД, обновив его профиль, или создать нового
+     */
+    private User loadOrCreateUser(org.telegram.telegrambots.meta.api.objects.User telegramUser) {
         Optional<User> existingUser = userRepository.findById(telegramUser.getId());
 
         if (existingUser.isPresent()) {
             User user = existingUser.get();
-            // Обновляем информацию о пользователе
-            updateUserInfo(user, telegramUser);
-            return userRepository.save(user);
+            // Обновляем информацию о пользователе, только если она изменилась
+            if (updateUserInfo(user, telegramUser)) {
+                return userRepository.save(user);
+            }
+            return user;
         } else {
             // Создаем нового пользователя
             User newUser = User.builder()
@@ -73,7 +95,7 @@ public class UserService {
     /**
      * Обновить информацию о пользователе
      */
-    private void updateUserInfo(User user, org.telegram.telegrambots.meta.api.objects.User telegramUser) {
+    private boolean updateUserInfo(User user, org.telegram.telegrambots.meta.api.objects.User telegramUser) {
         boolean updated = false;
 
         if (!Objects.equals(user.getUsername(), telegramUser.getUserName())) {
@@ -94,6 +116,7 @@ public class UserService {
         if (updated) {
             log.debug("Обновлена информация пользователя: {}", user.getTelegramId());
         }
+        return updated;
     }
 
     /**
@@ -102,15 +125,16 @@ public class UserService {
     @Transactional
     public void updateSubscription(Long telegramId, boolean subscribed) {
         userRepository.updateSubscriptionStatus(telegramId, subscribed);
+        // До фиксации кэш не меняется, иначе при откате в нем останется неверный статус
+        Transactions.afterCommit(() -> userCache.updateSubscription(telegramId, subscribed));
         log.info("Обновлен статус подписки пользователя {}: {}", telegramId, subscribed);
     }
 
     /**
-     * Обновить время последней активности пользователя
+     * Обновить время последней активности пользователя (запись в БД выполняется пакетно)
      */
-    @Transactional
     public void updateUserActivity(Long telegramId) {
-        userRepository.updateLastActivity(telegramId);
+        userActivityTracker.recordActivity(telegramId);
     }
 
     /**
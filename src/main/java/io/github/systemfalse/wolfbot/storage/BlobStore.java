@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Хранилище двоичных данных, адресуемых по содержимому.
+ * Ключ блоба — SHA-256 его содержимого в шестнадцатеричном виде,
+ * поэтому одинаковые данные хранятся один раз
+ */
+public interface BlobStore {
+
+    /**
+     * Записать данные из потока во временный файл, вычисляя ключ по ходу записи.
+     * Поток читается до конца, а если данных больше {@code maxSize} — только до превышения предела.
+     * После записи или ошибки поток закрывается
+     *
+     * @param maxSize максимальный размер данных в байтах
+     * @throws BlobTooLargeException если данных больше {@code maxSize}
+     */
+    StagedBlob stage(InputStream data, long maxSize) throws IOException;
+
+    /**
+     * Открыть поток для чтения блоба
+     *
+     * @throws java.nio.file.NoSuchFileException если блоб не найден
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Прочитать блоб целиком
+     *
+     * @throws java.nio.file.NoSuchFileException если блоб не найден
+     */
+    byte[] read(String key) throws IOException;
+
+    /**
+     * Существует ли блоб
+     */
+    boolean exists(String key);
+
+    /**
+     * Размер блоба в байтах
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Удалить блоб, если на него больше нет ссылок.
+     * Проверка и удаление выполняются под блокировкой ключа, общей с {@link StagedBlob#commit()},
+     * а блоб, помещенный в хранилище, но еще не закрытый, не удаляется: ссылка на него
+     * появится в БД, когда загрузка завершится
+     *
+     * @param unreferenced проверка, что на блоб не ссылается ни одно изображение
+     * @return true, если блоб удален
+     */
+    boolean deleteIfUnreferenced(String key, BooleanSupplier unreferenced) throws IOException;
+}
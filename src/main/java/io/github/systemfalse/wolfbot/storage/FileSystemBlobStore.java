@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.github.systemfalse.wolfbot.storage;
+
+import io.github.systemfalse.wolfbot.config.StorageConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Хранилище блобов в файловой системе.
+ * <p>
+ * Блоб с ключом {@code abcdef...} лежит в файле {@code root/ab/cd/abcdef...}, чтобы в одном
+ * каталоге не скапливалось слишком много файлов. Запись идет во временный файл, который
+ * затем атомарно переименовывается, поэтому читатели никогда не видят недописанный блоб.
+ * Помещение блоба в хранилище и его удаление выполняются под блокировкой ключа
+ */
+@Component
+@Slf4j
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path root;
+    private final Path tempDir;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Блобы, помещенные в хранилище, ссылка на которые еще не записана в БД, и число таких загрузок
+    private final ConcurrentHashMap<String, Integer> pinned = new ConcurrentHashMap<>();
+
+    public FileSystemBlobStore(StorageConfig storageConfig) throws IOException {
+        this.root = Path.of(storageConfig.getRoot()).toAbsolutePath().normalize();
+        this.tempDir = root.resolve("tmp");
+        Files.createDirectories(tempDir);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        log.info("Хранилище изображений: {}", root);
+    }
+
+    @Override
+    public StagedBlob stage(InputStream data, long maxSize) throws IOException {
+        Path temp = tempDir.resolve(UUID.randomUUID() + ".tmp");
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long size = 0;
+
+        try (ReadableByteChannel source = Channels.newChannel(data);
+             FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                size += buffer.remaining();
+                if (size > maxSize) {
+                    throw new BlobTooLargeException(maxSize);
+                }
+                digest.update(buffer.array(), 0, buffer.limit());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        return new FileStagedBlob(temp, HEX.formatHex(digest.digest()), size);
+    }
+
+    /**
+     * Переместить временный файл на место блоба
+     */
+    private void commit(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Тот же блоб параллельно записал другой поток
+        } catch (AtomicMoveNotSupportedException e) {
+            if (!Files.exists(target)) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public byte[] read(String key) throws IOException {
+        return Files.readAllBytes(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public boolean deleteIfUnreferenced(String key, BooleanSupplier unreferenced) throws IOException {
+        Path target = resolve(key);
+        synchronized (lock(key)) {
+            if (pinned.containsKey(key) || !unreferenced.getAsBoolean()) {
+                return false;
+            }
+            return Files.deleteIfExists(target);
+        }
+    }
+
+    private Object lock(String key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+
+    /**
+     * Путь к файлу блоба
+     */
+    private Path resolve(String key) {
+        if (key == null || key.length() != 64 || !isHex(key)) {
+            throw new IllegalArgumentException("Некорректный ключ блоба: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static boolean isHex(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.digit(key.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Блоб во временном каталоге хранилища
+     */
+    private final class FileStagedBlob implements StagedBlob {
+
+        private final Path temp;
+        private final String key;
+        private final long size;
+        private boolean committed;
+
+        private FileStagedBlob(Path temp, String key, long size) {
+            this.temp = temp;
+            this.key = key;
+            this.size = size;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return Files.newInputStream(temp);
+        }
+
+        @Override
+        public synchronized String commit() throws IOException {
+            Path target = resolve(key);
+            synchronized (lock(key)) {
+                // Под блокировкой блоб не может быть удален между проверкой и закреплением
+                if (!Files.exists(target)) {
+                    FileSystemBlobStore.this.commit(temp, target);
+                }
+                if (!committed) {
+                    pinned.merge(key, 1, Integer::sum);
+                    committed = true;
+                }
+            }
+            return key;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (committed) {
+                synchronized (lock(key)) {
+                    pinned.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+                }
+                committed = false;
+            }
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
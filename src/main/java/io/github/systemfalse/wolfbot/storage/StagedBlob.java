@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Блоб, записанный во временный файл, но еще не помещенный в хранилище.
+ * Ключ и размер известны сразу после записи, поэтому по ним можно решить,
+ * нужно ли сохранять данные. Если {@link #commit()} не вызван, {@link #close()} удаляет временный файл
+ */
+public interface StagedBlob extends AutoCloseable {
+
+    /**
+     * Ключ блоба (SHA-256 содержимого)
+     */
+    String key();
+
+    /**
+     * Размер данных в байтах
+     */
+    long size();
+
+    /**
+     * Открыть поток для чтения записанных данных
+     */
+    InputStream open() throws IOException;
+
+    /**
+     * Поместить данные в хранилище.
+     * До {@link #close()} блоб не будет удален как неиспользуемый, поэтому закрывать его
+     * нужно после того, как ссылка на него записана в БД
+     *
+     * @return ключ блоба
+     */
+    String commit() throws IOException;
+
+    /**
+     * Удалить временный файл, если данные не были помещены в хранилище, и снять защиту от удаления
+     */
+    @Override
+    void close() throws IOException;
+}
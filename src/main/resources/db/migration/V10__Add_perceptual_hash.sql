@@ -0,0 +1,2 @@
+-- dHash изображения для поиска почти точных копий
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS perceptual_hash BIGINT;
@@ -0,0 +1,3 @@
+-- Уменьшенная копия изображения для рассылки модераторам
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS preview_blob_key VARCHAR(64);
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS preview_file_id VARCHAR(255);
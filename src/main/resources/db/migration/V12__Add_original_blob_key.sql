@@ -0,0 +1,2 @@
+-- Исходный файл одобренного изображения, сохраняется после нормализации по настройке
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS original_blob_key VARCHAR(64);
@@ -0,0 +1,4 @@
+-- Размеры и глубина цвета из заголовка файла, позволяют отбирать изображения без декодирования
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS width INT;
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS height INT;
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS bit_depth INT;
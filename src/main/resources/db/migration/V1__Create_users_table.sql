@@ -0,0 +1,15 @@
+CREATE TABLE users (
+    telegram_id BIGINT PRIMARY KEY,
+    username VARCHAR(100),
+    first_name VARCHAR(100),
+    last_name VARCHAR(100),
+    subscribed BOOLEAN NOT NULL DEFAULT FALSE,
+    registered_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_active TIMESTAMP
+);
+
+CREATE INDEX idx_users_subscribed ON users(subscribed);
+CREATE INDEX idx_users_registered_at ON users(registered_at);
+CREATE INDEX idx_users_last_active ON users(last_active);
+
+COMMENT ON TABLE users IS 'Таблица пользователей Telegram бота';
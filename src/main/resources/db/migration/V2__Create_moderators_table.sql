@@ -0,0 +1,16 @@
+CREATE TABLE moderators (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    telegram_id BIGINT UNIQUE NOT NULL,
+    username VARCHAR(100),
+    first_name VARCHAR(100),
+    active BOOLEAN NOT NULL DEFAULT TRUE,
+    added_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    added_by BIGINT,
+    moderation_count INT NOT NULL DEFAULT 0
+);
+
+CREATE INDEX idx_moderators_telegram_id ON moderators(telegram_id);
+CREATE INDEX idx_moderators_active ON moderators(active);
+CREATE INDEX idx_moderators_added_at ON moderators(added_at);
+
+COMMENT ON TABLE moderators IS 'Таблица модераторов';
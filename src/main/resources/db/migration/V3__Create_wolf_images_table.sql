@@ -0,0 +1,28 @@
+CREATE TABLE wolf_images (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    file_name VARCHAR(255) NOT NULL,
+    file_data LONGBLOB NOT NULL,
+    file_size BIGINT,
+    mime_type VARCHAR(100),
+    uploaded_by BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    uploaded_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    moderated_at TIMESTAMP,
+    moderated_by BIGINT,
+    moderation_reason VARCHAR(500),
+    send_count INT NOT NULL DEFAULT 0,
+    last_sent TIMESTAMP,
+    
+    CONSTRAINT fk_images_user FOREIGN KEY (uploaded_by) REFERENCES users(telegram_id) ON DELETE CASCADE,
+    CONSTRAINT fk_images_moderator FOREIGN KEY (moderated_by) REFERENCES moderators(id) ON DELETE SET NULL,
+    CONSTRAINT chk_status CHECK (status IN ('PENDING', 'APPROVED', 'REJECTED', 'BLOCKED'))
+);
+
+CREATE INDEX idx_images_status ON wolf_images(status);
+CREATE INDEX idx_images_uploaded_by ON wolf_images(uploaded_by);
+CREATE INDEX idx_images_uploaded_at ON wolf_images(uploaded_at);
+CREATE INDEX idx_images_moderated_at ON wolf_images(moderated_at);
+CREATE INDEX idx_images_last_sent ON wolf_images(last_sent);
+CREATE INDEX idx_images_send_optimization ON wolf_images(status, send_count, last_sent);
+
+COMMENT ON TABLE wolf_images IS 'Таблица изображений волков';
@@ -0,0 +1,19 @@
+CREATE TABLE schedules (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    cron_expression VARCHAR(100) NOT NULL,
+    description VARCHAR(200),
+    active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_executed TIMESTAMP,
+    execution_count INT NOT NULL DEFAULT 0,
+    
+    CONSTRAINT fk_schedules_user FOREIGN KEY (user_id) REFERENCES users(telegram_id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_schedules_user_id ON schedules(user_id);
+CREATE INDEX idx_schedules_active ON schedules(active);
+CREATE INDEX idx_schedules_created_at ON schedules(created_at);
+CREATE INDEX idx_schedules_last_executed ON schedules(last_executed);
+
+COMMENT ON TABLE schedules IS 'Таблица расписаний отправки изображений';
@@ -0,0 +1,10 @@
+-- Дополнительные индексы для оптимизации
+-- H2 не поддерживает частичные индексы (CREATE INDEX ... WHERE), поэтому индексы составные по всей таблице
+CREATE INDEX IF NOT EXISTS idx_images_approved_last_sent
+ON wolf_images(status, last_sent);
+
+CREATE INDEX IF NOT EXISTS idx_schedules_active_user
+ON schedules(active, user_id, cron_expression);
+
+CREATE INDEX IF NOT EXISTS idx_users_subscribed_active
+ON users(subscribed, last_active);
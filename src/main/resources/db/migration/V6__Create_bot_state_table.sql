@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS bot_state (
+    state_key VARCHAR(100) PRIMARY KEY,
+    state_value VARCHAR(255) NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE bot_state IS 'Служебное состояние бота (последний обработанный update_id и т.п.)';
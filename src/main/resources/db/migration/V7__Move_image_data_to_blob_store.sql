@@ -0,0 +1,5 @@
+-- Данные изображений хранятся в файловом хранилище, в таблице остается только ключ
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS blob_key VARCHAR(64);
+ALTER TABLE wolf_images ALTER COLUMN file_data SET NULL;
+
+CREATE INDEX IF NOT EXISTS idx_images_blob_key ON wolf_images(blob_key);
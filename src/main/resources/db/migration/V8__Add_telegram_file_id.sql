@@ -0,0 +1,2 @@
+-- file_id позволяет повторно отправлять изображение без загрузки данных
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS telegram_file_id VARCHAR(255);
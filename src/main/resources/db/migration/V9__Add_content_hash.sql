@@ -0,0 +1,6 @@
+ALTER TABLE wolf_images ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+-- Ключ блоба вычисляется как SHA-256 содержимого и совпадает с хешем
+UPDATE wolf_images SET content_hash = blob_key WHERE content_hash IS NULL AND blob_key IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_images_content_hash ON wolf_images(content_hash);
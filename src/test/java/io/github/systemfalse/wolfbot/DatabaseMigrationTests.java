@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверка миграций на пустой базе и на базе, схему которой создал Hibernate до появления миграций
+ */
+class DatabaseMigrationTests {
+
+    private String url;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        connection = DriverManager.getConnection(url, "sa", "");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        connection.close();
+    }
+
+    @Test
+    void migratesEmptyDatabase() throws SQLException {
+        assertThat(migrate().migrationsExecuted).isEqualTo(13);
+
+        assertThat(isNullable("FILE_DATA")).isTrue();
+        insertImageWithoutPayload();
+    }
+
+    @Test
+    void upgradesBaselineSchema() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // Схема, которую создавал ddl-auto=update по сущностям исходной версии
+            statement.execute("CREATE TABLE users (telegram_id BIGINT PRIMARY KEY, username VARCHAR(100) NOT NULL, " +
+                    "first_name VARCHAR(100), last_name VARCHAR(100), subscribed BOOLEAN NOT NULL, " +
+                    "registered_at TIMESTAMP NOT NULL, last_active TIMESTAMP)");
+            statement.execute("CREATE TABLE moderators (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "telegram_id BIGINT NOT NULL UNIQUE, username VARCHAR(100), first_name VARCHAR(100), " +
+                    "active BOOLEAN NOT NULL, added_at TIMESTAMP NOT NULL, added_by BIGINT, moderation_count INT)");
+            statement.execute("CREATE TABLE wolf_images (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "file_name VARCHAR(255) NOT NULL, file_data BLOB NOT NULL, file_size BIGINT, " +
+                    "mime_type VARCHAR(100), uploaded_by BIGINT NOT NULL REFERENCES users(telegram_id), " +
+                    "status VARCHAR(255) NOT NULL, uploaded_at TIMESTAMP NOT NULL, moderated_at TIMESTAMP, " +
+                    "moderated_by BIGINT REFERENCES moderators(id), moderation_reason VARCHAR(500), " +
+                    "send_count INT, last_sent TIMESTAMP)");
+            statement.execute("CREATE TABLE schedules (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "user_id BIGINT NOT NULL REFERENCES users(telegram_id), cron_expression VARCHAR(100) NOT NULL, " +
+                    "description VARCHAR(200), active BOOLEAN NOT NULL, created_at TIMESTAMP NOT NULL, " +
+                    "last_executed TIMESTAMP, execution_count INT)");
+            // Столбец, который ddl-auto добавил раньше, чем миграция успела выполниться
+            statement.execute("ALTER TABLE wolf_images ADD COLUMN blob_key VARCHAR(64)");
+            statement.execute("INSERT INTO users (telegram_id, username, subscribed, registered_at) " +
+                    "VALUES (1, 'wolf', TRUE, CURRENT_TIMESTAMP)");
+            statement.execute("INSERT INTO wolf_images (file_name, file_data, blob_key, uploaded_by, status, uploaded_at) " +
+                    "VALUES ('old.jpg', X'FFD8FF', 'abc', 1, 'APPROVED', CURRENT_TIMESTAMP)");
+        }
+
+        assertThat(migrate().migrationsExecuted).isEqualTo(9);
+
+        assertThat(isNullable("FILE_DATA")).isTrue();
+        insertImageWithoutPayload();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT content_hash FROM wolf_images WHERE file_name = 'old.jpg'")) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("abc");
+        }
+    }
+
+    private MigrateResult migrate() {
+        // Те же параметры, что и в application.properties
+        return Flyway.configure()
+                .dataSource(url, "sa", "")
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("4")
+                .load()
+                .migrate();
+    }
+
+    private boolean isNullable(String column) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(null, "PUBLIC", "WOLF_IMAGES", column)) {
+            assertThat(rs.next()).isTrue();
+            return "YES".equals(rs.getString("IS_NULLABLE"));
+        }
+    }
+
+    private void insertImageWithoutPayload() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("MERGE INTO users (telegram_id, username, subscribed, registered_at) " +
+                    "KEY (telegram_id) VALUES (2, 'new', FALSE, CURRENT_TIMESTAMP)");
+            assertThat(statement.executeUpdate("INSERT INTO wolf_images (file_name, blob_key, content_hash, " +
+                    "uploaded_by, status, uploaded_at) VALUES ('new.jpg', 'def', 'def', 2, 'PENDING', " +
+                    "CURRENT_TIMESTAMP)")).isEqualTo(1);
+        }
+    }
+}
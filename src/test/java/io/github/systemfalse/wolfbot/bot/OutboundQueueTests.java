@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot;
+
+import io.github.systemfalse.wolfbot.bot.transport.ScriptedBotApiServer;
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Очередь отправки против тестового сервера Bot API: ответы 429 и 5xx приходят по HTTP
+ * и разбираются библиотекой так же, как ответы Telegram
+ */
+class OutboundQueueTests {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+    // Допуск на точность таймеров
+    private static final long TOLERANCE = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private ScriptedBotApiServer server;
+    private DefaultAbsSender sender;
+    private BotConfig botConfig;
+    private OutboundQueue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = ScriptedBotApiServer.start();
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(server.getBaseUrl());
+        sender = new DefaultAbsSender(options, "test-token") {
+        };
+        botConfig = new BotConfig();
+        botConfig.setMessageTimeout(5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+        server.close();
+    }
+
+    @Test
+    void retriesAfterTooManyRequests() throws Exception {
+        queue = new OutboundQueue(botConfig);
+        server.tooManyRequests("sendMessage", 2, 1);
+
+        Message message = send(42, "привет").get(10, TimeUnit.SECONDS);
+
+        assertThat(message.getText()).isEqualTo("привет");
+        List<ScriptedBotApiServer.Call> calls = server.getCalls("sendMessage");
+        assertThat(calls).extracting(ScriptedBotApiServer.Call::failed).containsExactly(true, true, false);
+        // Повтор не раньше retry_after
+        assertThat(calls.get(1).nanos() - calls.get(0).nanos()).isGreaterThan(ONE_SECOND - TOLERANCE);
+        assertThat(calls.get(2).nanos() - calls.get(1).nanos()).isGreaterThan(ONE_SECOND - TOLERANCE);
+    }
+
+    @Test
+    void failsAfterMaxRetries() {
+        botConfig.getOutbound().setMaxRetries(1);
+        queue = new OutboundQueue(botConfig);
+        server.tooManyRequests("sendMessage", 5, 1);
+
+        assertThatThrownBy(() -> send(42, "привет").get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOfSatisfying(TelegramApiRequestException.class, e -> {
+                    assertThat(e.getErrorCode()).isEqualTo(429);
+                    assertThat(e.getParameters().getRetryAfter()).isEqualTo(1);
+                });
+        assertThat(server.getCalls("sendMessage")).hasSize(2);
+    }
+
+    @Test
+    void retriesServerErrors() throws Exception {
+        queue = new OutboundQueue(botConfig);
+        server.serverError("sendMessage", 1);
+
+        assertThat(send(42, "привет").get(10, TimeUnit.SECONDS).getText()).isEqualTo("привет");
+        assertThat(server.getCalls("sendMessage")).extracting(ScriptedBotApiServer.Call::failed)
+                .containsExactly(true, false);
+    }
+
+    @Test
+    void retryAfterDelaysOnlyThatChatAndKeepsItsOrder() throws Exception {
+        queue = new OutboundQueue(botConfig);
+        server.tooManyRequests("sendMessage", 1, 1);
+
+        CompletableFuture<Message> first = send(1, "первое");
+        // Первый запрос чата 1 уже получил 429, остальные ставятся в очередь после него
+        awaitCalls(1);
+        CompletableFuture<Message> second = send(1, "второе");
+        CompletableFuture<Message> other = send(2, "другой чат");
+        CompletableFuture.allOf(first, second, other).get(10, TimeUnit.SECONDS);
+
+        List<ScriptedBotApiServer.Call> calls = server.getCalls("sendMessage");
+        assertThat(calls).extracting(ScriptedBotApiServer.Call::text)
+                .containsExactly("первое", "другой чат", "первое", "второе");
+        assertThat(calls.get(1).nanos() - calls.get(0).nanos()).isLessThan(ONE_SECOND);
+        assertThat(calls.get(2).nanos() - calls.get(0).nanos()).isGreaterThan(ONE_SECOND - TOLERANCE);
+    }
+
+    private CompletableFuture<Message> send(long chatId, String text) {
+        SendMessage message = SendMessage.builder().chatId(chatId).text(text).build();
+        return queue.submit(chatId, SendPriority.INTERACTIVE, () -> sender.execute(message));
+    }
+
+    private void awaitCalls(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getCalls("sendMessage").size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
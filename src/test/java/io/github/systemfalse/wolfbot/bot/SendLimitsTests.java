@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверка общих ограничений частоты на тестовых часах
+ */
+class SendLimitsTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void bulkBroadcastRunsAtBulkShareOfGlobalRate() {
+        SendLimits limits = new SendLimits(outbound(30, 0.5, 16), 0);
+        List<TokenBucket> chats = chats(1000, 0);
+
+        int sent = 0;
+        int next = 0;
+        for (long now = 0; now < 10 * SECOND; now += TICK) {
+            // Каждый тик пытаемся отправить в несколько чатов, как рабочий поток при непустой очереди
+            for (int attempt = 0; attempt < 5; attempt++) {
+                if (limits.tryAcquire(chats.get(next % chats.size()), true, now) == 0) {
+                    limits.releaseBulkSlot();
+                    sent++;
+                    next++;
+                }
+            }
+        }
+
+        // Начальный запас 15 токенов плюс 15 в секунду; отказы не должны съедать лимит
+        assertThat(sent).isBetween(160, 166);
+    }
+
+    @Test
+    void combinedTrafficNeverExceedsGlobalRate() {
+        SendLimits limits = new SendLimits(outbound(30, 0.8, 16), 0);
+        List<TokenBucket> chats = chats(1000, 0);
+
+        int sent = 0;
+        int next = 0;
+        for (long now = 0; now < 10 * SECOND; now += TICK) {
+            boolean bulk = (now / TICK) % 2 == 0;
+            if (limits.tryAcquire(chats.get(next % chats.size()), bulk, now) == 0) {
+                if (bulk) {
+                    limits.releaseBulkSlot();
+                }
+                sent++;
+                next++;
+            }
+        }
+
+        assertThat(sent).isBetween(325, 330);
+    }
+
+    @Test
+    void chatLimitRejectionKeepsSharedTokens() {
+        SendLimits limits = new SendLimits(outbound(3, 1, 16), 0);
+        TokenBucket busyChat = new TokenBucket(1, 1, 0);
+
+        assertThat(limits.tryAcquire(busyChat, true, 0)).isZero();
+        for (int i = 0; i < 100; i++) {
+            assertThat(limits.tryAcquire(busyChat, true, 0)).isPositive();
+        }
+
+        // Глобальный и массовый лимиты не израсходованы отказами
+        assertThat(limits.tryAcquire(new TokenBucket(1, 1, 0), true, 0)).isZero();
+        assertThat(limits.tryAcquire(new TokenBucket(1, 1, 0), true, 0)).isZero();
+        assertThat(limits.tryAcquire(new TokenBucket(1, 1, 0), true, 0)).isPositive();
+    }
+
+    @Test
+    void busyBulkSlotsKeepChatToken() {
+        SendLimits limits = new SendLimits(outbound(30, 1, 1), 0);
+        TokenBucket chat = new TokenBucket(1, 1, 0);
+
+        assertThat(limits.tryAcquire(new TokenBucket(1, 1, 0), true, 0)).isZero();
+        assertThat(limits.tryAcquire(chat, true, 0)).isEqualTo(SendLimits.BULK_SLOT_RETRY_NANOS);
+        assertThat(limits.tryAcquire(chat, true, 0)).isEqualTo(SendLimits.BULK_SLOT_RETRY_NANOS);
+
+        // Токен чата остался, интерактивный запрос проходит сразу
+        assertThat(limits.tryAcquire(chat, false, 0)).isZero();
+    }
+
+    @Test
+    void interactiveRequestsDoNotUseBulkBudget() {
+        SendLimits limits = new SendLimits(outbound(10, 0.1, 16), 0);
+
+        assertThat(limits.tryAcquire(null, true, 0)).isZero();
+        assertThat(limits.tryAcquire(null, true, 0)).isPositive();
+        for (int i = 0; i < 9; i++) {
+            assertThat(limits.tryAcquire(null, false, 0)).isZero();
+        }
+        assertThat(limits.tryAcquire(null, false, 0)).isPositive();
+    }
+
+    private static BotConfig.Outbound outbound(double globalPerSecond, double bulkShare, int maxConcurrentRequests) {
+        BotConfig.Outbound outbound = new BotConfig.Outbound();
+        outbound.setGlobalPerSecond(globalPerSecond);
+        outbound.setBulkShare(bulkShare);
+        outbound.setMaxConcurrentRequests(maxConcurrentRequests);
+        return outbound;
+    }
+
+    private static List<TokenBucket> chats(int count, long now) {
+        List<TokenBucket> chats = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chats.add(new TokenBucket(1, 1, now));
+        }
+        return chats;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TelegramBotTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void invalidFileIdIsRejection() throws Exception {
+        assertThat(TelegramBot.isFileRejected(error(400, "Bad Request: wrong file identifier/HTTP URL specified")))
+                .isTrue();
+        assertThat(TelegramBot.isFileRejected(error(400, "Bad Request: wrong remote file identifier specified: " +
+                "Wrong padding in the string"))).isTrue();
+        assertThat(TelegramBot.isFileRejected(error(400, "Bad Request: FILE_REFERENCE_EXPIRED"))).isTrue();
+        assertThat(TelegramBot.isFileRejected(new CompletionException(
+                error(400, "Bad Request: wrong file identifier/HTTP URL specified")))).isTrue();
+    }
+
+    @Test
+    void otherBadRequestsAreNotRejection() throws Exception {
+        assertThat(TelegramBot.isFileRejected(error(400, "Bad Request: chat not found"))).isFalse();
+        assertThat(TelegramBot.isFileRejected(error(400, "Bad Request: can't parse entities: " +
+                "Unsupported start tag \"br\" at byte offset 12"))).isFalse();
+        assertThat(TelegramBot.isFileRejected(error(403, "Forbidden: bot was blocked by the user"))).isFalse();
+        assertThat(TelegramBot.isFileRejected(new TelegramApiRequestException("Unable to execute sendphoto method")))
+                .isFalse();
+    }
+
+    private static TelegramApiRequestException error(int code, String description) throws Exception {
+        ApiResponse<Object> response = MAPPER.readValue(
+                MAPPER.writeValueAsString(Map.of("ok", false, "error_code", code, "description", description)),
+                new TypeReference<>() {
+                });
+        return new TelegramApiRequestException("Error sending photo", response);
+    }
+}
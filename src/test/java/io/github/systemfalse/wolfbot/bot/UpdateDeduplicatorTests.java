@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot;
+
+import io.github.systemfalse.wolfbot.model.BotState;
+import io.github.systemfalse.wolfbot.repository.BotStateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static io.github.systemfalse.wolfbot.bot.UpdateDeduplicator.WINDOW_BITS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UpdateDeduplicatorTests {
+
+    private final BotStateRepository repository = mock(BotStateRepository.class);
+    private BotState stored;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(stored));
+        when(repository.save(any(BotState.class))).thenAnswer(invocation -> stored = invocation.getArgument(0));
+    }
+
+    @Test
+    void rejectsRedeliveredUpdates() {
+        UpdateDeduplicator deduplicator = start();
+
+        assertThat(deduplicator.markReceived(10)).isTrue();
+        assertThat(deduplicator.markReceived(12)).isTrue();
+        assertThat(deduplicator.markReceived(11)).isTrue();
+        assertThat(deduplicator.markReceived(10)).isFalse();
+        assertThat(deduplicator.markReceived(12)).isFalse();
+    }
+
+    @Test
+    void savesOnlyFinishedPrefix() {
+        UpdateDeduplicator deduplicator = start();
+        deduplicator.markReceived(10);
+        deduplicator.markReceived(11);
+        deduplicator.markReceived(12);
+
+        deduplicator.markFinished(10);
+        deduplicator.markFinished(12);
+        deduplicator.saveOffset();
+        // Обновление 11 еще обрабатывается, поэтому 12 не сохраняется
+        assertThat(savedOffset()).isEqualTo(10);
+
+        deduplicator.markFinished(11);
+        deduplicator.saveOffset();
+        assertThat(savedOffset()).isEqualTo(12);
+    }
+
+    @Test
+    void reprocessesUnfinishedUpdatesAfterRestart() {
+        UpdateDeduplicator before = start();
+        before.markReceived(10);
+        before.markReceived(11);
+        before.markReceived(12);
+        before.markFinished(10);
+        before.markFinished(12);
+        before.shutdown();
+
+        UpdateDeduplicator after = start();
+        assertThat(after.markReceived(10)).isFalse();
+        assertThat(after.markReceived(11)).isTrue();
+        assertThat(after.markReceived(12)).isTrue();
+        assertThat(after.markReceived(12)).isFalse();
+    }
+
+    @Test
+    void reusesSlotsWhenWindowWraps() {
+        UpdateDeduplicator deduplicator = start();
+        long first = 5;
+        deduplicator.markReceived(first);
+        deduplicator.markFinished(first);
+
+        long wrapped = first + WINDOW_BITS - 1;
+        assertThat(deduplicator.markReceived(wrapped)).isTrue();
+        assertThat(deduplicator.markReceived(first + 1)).isTrue();
+        // Тот же слот кольцевой маски, что у first, но другое обновление
+        assertThat(deduplicator.markReceived(first + WINDOW_BITS)).isTrue();
+        assertThat(deduplicator.markReceived(first + WINDOW_BITS)).isFalse();
+        assertThat(deduplicator.markReceived(wrapped)).isFalse();
+    }
+
+    @Test
+    void acceptsRestartedSequence() {
+        UpdateDeduplicator before = start();
+        long old = 5L * WINDOW_BITS;
+        before.markReceived(old);
+        before.markFinished(old);
+        before.shutdown();
+
+        UpdateDeduplicator after = start();
+        assertThat(after.markReceived(old)).isFalse();
+        // Telegram начал нумерацию заново
+        assertThat(after.markReceived(1)).isTrue();
+        assertThat(after.markReceived(2)).isTrue();
+        assertThat(after.markReceived(1)).isFalse();
+
+        after.markFinished(2);
+        after.saveOffset();
+        assertThat(savedOffset()).isZero();
+
+        after.markFinished(1);
+        after.saveOffset();
+        assertThat(savedOffset()).isEqualTo(2);
+    }
+
+    private UpdateDeduplicator start() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(repository, new SimpleMeterRegistry());
+        deduplicator.init();
+        return deduplicator;
+    }
+
+    private long savedOffset() {
+        return Long.parseLong(stored.getValue());
+    }
+}
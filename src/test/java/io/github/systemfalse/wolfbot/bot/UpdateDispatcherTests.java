@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpdateDispatcherTests {
+
+    private final BotConfig botConfig = new BotConfig();
+    private final List<Integer> done = new CopyOnWriteArrayList<>();
+    private final Consumer<Update> onDone = update -> done.add(update.getUpdateId());
+
+    @Test
+    void reportsShedUpdateAsDone() {
+        botConfig.getDispatcher().setQueueCapacity(0);
+        UpdateDispatcher dispatcher = new UpdateDispatcher(botConfig, new SimpleMeterRegistry());
+        List<Integer> busy = new CopyOnWriteArrayList<>();
+
+        boolean accepted = dispatcher.dispatch(update(1, 10), UpdatePriority.HIGH,
+                update -> { }, update -> busy.add(update.getUpdateId()), onDone);
+
+        assertThat(accepted).isFalse();
+        assertThat(busy).containsExactly(1);
+        assertThat(done).containsExactly(1);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void reportsUpdateInterruptedWhileWaitingForPermitAsDone() throws Exception {
+        botConfig.getDispatcher().setMaxConcurrency(1);
+        botConfig.setMessageTimeout(0);
+        UpdateDispatcher dispatcher = new UpdateDispatcher(botConfig, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+
+        dispatcher.dispatch(update(1, 10), UpdatePriority.HIGH, update -> {
+            started.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, update -> { }, onDone);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        // Единственное разрешение занято, второе обновление ждет его
+        dispatcher.dispatch(update(2, 20), UpdatePriority.HIGH, update -> processed.add(update.getUpdateId()),
+                update -> { }, onDone);
+        Thread.sleep(100);
+
+        // Остановка без ожидания прерывает оба обработчика
+        dispatcher.shutdown();
+        awaitDone(2);
+
+        assertThat(processed).isEmpty();
+        assertThat(done).containsExactlyInAnyOrder(1, 2);
+    }
+
+    private void awaitDone(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (done.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Update update(int updateId, long chatId) {
+        Message message = new Message();
+        message.setChat(new Chat(chatId, "private"));
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+}
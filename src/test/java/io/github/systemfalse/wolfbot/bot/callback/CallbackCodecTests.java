@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot.callback;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CallbackCodecTests {
+
+    @Test
+    void roundTripsEveryAction() {
+        for (CallbackAction action : CallbackAction.values()) {
+            assertThat(CallbackCodec.decode(CallbackCodec.encode(action, 123)))
+                    .isEqualTo(new CallbackData(action, 123, 0));
+            assertThat(CallbackCodec.decode(CallbackCodec.encode(action, 123, 4)))
+                    .isEqualTo(new CallbackData(action, 123, 4));
+        }
+    }
+
+    @Test
+    void roundTripsVarintBoundaries() {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, 1L << 56, Long.MAX_VALUE};
+        for (long id : values) {
+            for (long extra : values) {
+                assertThat(CallbackCodec.decode(CallbackCodec.encode(CallbackAction.APPROVE, id, extra)))
+                        .isEqualTo(new CallbackData(CallbackAction.APPROVE, id, extra));
+            }
+        }
+    }
+
+    @Test
+    void encodedDataFitsTelegramLimit() {
+        assertThat(CallbackCodec.encode(CallbackAction.APPROVE, 123)).hasSize(4);
+        assertThat(CallbackCodec.encode(CallbackAction.FULL_SIZE, Long.MAX_VALUE, Long.MAX_VALUE).length())
+                .isLessThanOrEqualTo(64);
+    }
+
+    @Test
+    void rejectsNegativeValues() {
+        assertThatThrownBy(() -> CallbackCodec.encode(CallbackAction.APPROVE, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CallbackCodec.encode(CallbackAction.APPROVE, 1, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsMalformedData() {
+        assertThat(CallbackCodec.decode(null)).isNull();
+        assertThat(CallbackCodec.decode("")).isNull();
+        assertThat(CallbackCodec.decode("A".repeat(65))).isNull();
+        // Символы вне алфавита base64url
+        assertThat(CallbackCodec.decode("AQF7+")).isNull();
+        assertThat(CallbackCodec.decode("AQF7=")).isNull();
+        assertThat(CallbackCodec.decode("ёжик")).isNull();
+        // Неизвестная версия и неизвестное действие
+        assertThat(CallbackCodec.decode(encodeBytes(2, 1, 5))).isNull();
+        assertThat(CallbackCodec.decode(encodeBytes(1, 99, 5))).isNull();
+        // Нет ID
+        assertThat(CallbackCodec.decode(encodeBytes(1, 1))).isNull();
+        // Varint оборван на байте продолжения
+        assertThat(CallbackCodec.decode(encodeBytes(1, 1, 0x85))).isNull();
+        // Лишнее третье значение
+        assertThat(CallbackCodec.decode(encodeBytes(1, 1, 5, 6, 7))).isNull();
+        // Varint длиннее 63 бит
+        assertThat(CallbackCodec.decode(encodeBytes(1, 1, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01)))
+                .isNull();
+    }
+
+    @Test
+    void decodesLegacyData() {
+        assertThat(CallbackCodec.decode("moderate_approve_123"))
+                .isEqualTo(new CallbackData(CallbackAction.APPROVE, 123, 0));
+        assertThat(CallbackCodec.decode("moderate_reject_7"))
+                .isEqualTo(new CallbackData(CallbackAction.REJECT, 7, 0));
+        assertThat(CallbackCodec.decode("moderate_block_8"))
+                .isEqualTo(new CallbackData(CallbackAction.BLOCK, 8, 0));
+        assertThat(CallbackCodec.decode("moderate_details_9"))
+                .isEqualTo(new CallbackData(CallbackAction.DETAILS, 9, 0));
+        assertThat(CallbackCodec.decode("schedule_daily_18"))
+                .isEqualTo(new CallbackData(CallbackAction.SCHEDULE_DAILY, 18, 0));
+        assertThat(CallbackCodec.decode("schedule_cancel"))
+                .isEqualTo(new CallbackData(CallbackAction.SCHEDULE_CANCEL, 0, 0));
+        assertThat(CallbackCodec.decode("processed"))
+                .isEqualTo(new CallbackData(CallbackAction.PROCESSED, 0, 0));
+    }
+
+    @Test
+    void rejectsMalformedLegacyData() {
+        assertThat(CallbackCodec.decode("moderate_approve_")).isNull();
+        assertThat(CallbackCodec.decode("moderate_approve_12x")).isNull();
+        assertThat(CallbackCodec.decode("moderate_delete_1")).isNull();
+        assertThat(CallbackCodec.decode("schedule_daily_")).isNull();
+        assertThat(CallbackCodec.decode("unknown")).isNull();
+    }
+
+    private static String encodeBytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
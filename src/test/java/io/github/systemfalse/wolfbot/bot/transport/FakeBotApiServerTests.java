@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot.transport;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.File;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Встроенный сервер Bot API против настоящих запросов библиотеки telegrambots
+ */
+class FakeBotApiServerTests {
+
+    private static final String TOKEN = "test-token";
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private BotConfig botConfig;
+    private FakeBotApiServer server;
+    private DefaultAbsSender sender;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        botConfig = new BotConfig();
+        botConfig.setUsername("wolf_test_bot");
+        botConfig.getFakeApi().setEnabled(true);
+        botConfig.getFakeApi().setPort(0);
+        server = new FakeBotApiServer(botConfig);
+        server.start();
+
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(baseUrl() + "/bot");
+        sender = new DefaultAbsSender(options, TOKEN) {
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void deliversInjectedMessagesThroughGetUpdates() throws Exception {
+        post("/fake/message?chat_id=7&text=/start");
+
+        List<Update> updates = sender.execute(GetUpdates.builder().timeout(1).build());
+
+        assertThat(updates).hasSize(1);
+        assertThat(updates.get(0).getMessage().getText()).isEqualTo("/start");
+        assertThat(updates.get(0).getMessage().getChatId()).isEqualTo(7L);
+
+        // Подтвержденные обновления больше не выдаются
+        long offset = updates.get(0).getUpdateId() + 1;
+        assertThat(sender.execute(GetUpdates.builder().offset((int) offset).timeout(0).build())).isEmpty();
+    }
+
+    @Test
+    void servesUploadedPhotoThroughGetFileAndDownload() throws Exception {
+        byte[] data = {1, 2, 3, 4, 5};
+        Message sent = sender.execute(SendPhoto.builder()
+                .chatId(7L)
+                .photo(new InputFile(new ByteArrayInputStream(data), "wolf.jpg"))
+                .caption("волк")
+                .build());
+        String fileId = sent.getPhoto().get(0).getFileId();
+
+        // Повторная отправка по file_id
+        Message resent = sender.execute(SendPhoto.builder().chatId(8L).photo(new InputFile(fileId)).build());
+        assertThat(resent.getPhoto().get(0).getFileId()).isEqualTo(fileId);
+
+        File file = sender.execute(new GetFile(fileId));
+        assertThat(file.getFileSize()).isEqualTo(data.length);
+
+        HttpResponse<byte[]> download = httpClient.send(
+                HttpRequest.newBuilder(URI.create(baseUrl() + "/file/bot" + TOKEN + "/" + file.getFilePath())).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(download.statusCode()).isEqualTo(200);
+        assertThat(download.body()).containsExactly(data);
+    }
+
+    @Test
+    void rejectsUnknownFileId() {
+        assertThatThrownBy(() -> sender.execute(new GetFile("missing")))
+                .isInstanceOfSatisfying(TelegramApiRequestException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(400));
+    }
+
+    @Test
+    void injectsTooManyRequests() {
+        botConfig.getFakeApi().setTooManyRequestsRate(1);
+        botConfig.getFakeApi().setRetryAfter(3);
+
+        assertThatThrownBy(() -> sender.execute(SendMessage.builder().chatId(7L).text("привет").build()))
+                .isInstanceOfSatisfying(TelegramApiRequestException.class, e -> {
+                    assertThat(e.getErrorCode()).isEqualTo(429);
+                    assertThat(e.getParameters().getRetryAfter()).isEqualTo(3);
+                });
+    }
+
+    @Test
+    void injectsServerErrors() {
+        botConfig.getFakeApi().setServerErrorRate(1);
+
+        assertThatThrownBy(() -> sender.execute(SendMessage.builder().chatId(7L).text("привет").build()))
+                .isInstanceOfSatisfying(TelegramApiRequestException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(502));
+    }
+
+    @Test
+    void addsConfiguredLatency() throws Exception {
+        botConfig.getFakeApi().setLatency(Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        Message message = sender.execute(SendMessage.builder().chatId(7L).text("привет").build());
+
+        assertThat(message.getText()).isEqualTo("привет");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+    }
+
+    private void post(String path) throws Exception {
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(baseUrl() + path)).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + server.getPort();
+    }
+}
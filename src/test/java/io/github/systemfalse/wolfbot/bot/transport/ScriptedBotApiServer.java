@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.bot.transport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сервер Bot API для модульных тестов на свободном локальном порту.
+ * В отличие от {@link FakeBotApiServer} ошибки здесь не случайные.
+ * <p>
+ * Отвечает на sendMessage, остальные методы завершает успехом. Имена методов не зависят от регистра. Ответы с ошибками
+ * (429 с {@code retry_after}, 5xx) задаются заранее для следующих вызовов метода.
+ * Сервер запоминает все вызовы методов, чтобы тест мог проверить их порядок и время
+ */
+public final class ScriptedBotApiServer implements AutoCloseable {
+
+    private static final long BOT_ID = 1L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Deque<Fault>> faults = new ConcurrentHashMap<>();
+    private final List<Call> calls = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+
+    private ScriptedBotApiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handleExchange);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Запустить сервер на свободном порту
+     */
+    public static ScriptedBotApiServer start() throws IOException {
+        return new ScriptedBotApiServer();
+    }
+
+    /**
+     * Адрес Bot API для {@code DefaultBotOptions.setBaseUrl}
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/bot";
+    }
+
+    /**
+     * Ответить 429 на следующие {@code count} вызовов метода
+     */
+    public void tooManyRequests(String method, int count, int retryAfter) {
+        addFaults(method, count, new Fault(429, "Too Many Requests: retry after " + retryAfter, retryAfter));
+    }
+
+    /**
+     * Ответить ошибкой сервера на следующие {@code count} вызовов метода
+     */
+    public void serverError(String method, int count) {
+        addFaults(method, count, new Fault(502, "Bad Gateway", null));
+    }
+
+    /**
+     * Вызовы метода в порядке поступления
+     */
+    public List<Call> getCalls(String method) {
+        return calls.stream().filter(call -> call.method().equalsIgnoreCase(method)).toList();
+    }
+
+    private void addFaults(String method, int count, Fault fault) {
+        Deque<Fault> queue = faults.computeIfAbsent(method.toLowerCase(Locale.ROOT), key -> new ArrayDeque<>());
+        synchronized (queue) {
+            for (int i = 0; i < count; i++) {
+                queue.addLast(fault);
+            }
+        }
+    }
+
+    private Fault nextFault(String method) {
+        Deque<Fault> queue = faults.get(method);
+        if (queue == null) {
+            return null;
+        }
+        synchronized (queue) {
+            return queue.pollFirst();
+        }
+    }
+
+    /**
+     * Вызов метода Bot API: /bot{token}/{method}
+     */
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            int slash = path.indexOf('/', "/bot".length());
+            if (!path.startsWith("/bot") || slash < 0) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            // Библиотека передает имена методов в нижнем регистре
+            String method = path.substring(slash + 1).toLowerCase(Locale.ROOT);
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody().readAllBytes());
+            ObjectNode fields = request != null && request.isObject()
+                    ? (ObjectNode) request : objectMapper.createObjectNode();
+
+            Fault fault = nextFault(method);
+            calls.add(new Call(method, fields.path("chat_id").asText(null), fields.path("text").asText(null),
+                    System.nanoTime(), fault != null));
+            if (fault != null) {
+                writeError(exchange, fault);
+                return;
+            }
+
+            JsonNode result = "sendmessage".equals(method) ? sendMessage(fields) : BooleanNode.TRUE;
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("ok", true);
+            response.set("result", result);
+            writeJson(exchange, 200, response);
+        }
+    }
+
+    private JsonNode sendMessage(ObjectNode fields) {
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("message_id", nextMessageId.getAndIncrement());
+        message.put("date", Instant.now().getEpochSecond());
+        long chatId = fields.path("chat_id").asLong();
+        ObjectNode chat = message.putObject("chat");
+        chat.put("id", chatId);
+        chat.put("type", chatId < 0 ? "group" : "private");
+        ObjectNode from = message.putObject("from");
+        from.put("id", BOT_ID);
+        from.put("is_bot", true);
+        from.put("first_name", "WolfBot");
+        message.put("text", fields.path("text").asText());
+        return message;
+    }
+
+    private void writeError(HttpExchange exchange, Fault fault) throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("ok", false);
+        response.put("error_code", fault.status());
+        response.put("description", fault.description());
+        if (fault.retryAfter() != null) {
+            response.putObject("parameters").put("retry_after", fault.retryAfter());
+        }
+        writeJson(exchange, fault.status(), response);
+    }
+
+    private void writeJson(HttpExchange exchange, int status, JsonNode json) throws IOException {
+        byte[] data = objectMapper.writeValueAsBytes(json);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, data.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(data);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Вызов метода API
+     *
+     * @param chatId значение chat_id из запроса или null
+     * @param text   значение text из запроса или null
+     * @param nanos  время поступления по {@link System#nanoTime()}
+     * @param failed вместо результата отправлена ошибка
+     */
+    public record Call(String method, String chatId, String text, long nanos, boolean failed) {
+    }
+
+    private record Fault(int status, String description, Integer retryAfter) {
+    }
+}
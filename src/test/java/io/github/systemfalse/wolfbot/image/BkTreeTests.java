@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BkTreeTests {
+
+    @Test
+    void findsHashesWithinDistance() {
+        BkTree tree = new BkTree();
+        tree.add(0b0000L, 1);
+        tree.add(0b0001L, 2);
+        tree.add(0b0011L, 3);
+        tree.add(0b0111L, 4);
+        tree.add(0b1111L, 5);
+
+        assertThat(tree.search(0b0000L, 0)).extracting(BkTree.Match::id).containsExactly(1L);
+        assertThat(tree.search(0b0000L, 2)).extracting(BkTree.Match::id).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(tree.search(0b0011L, 1))
+                .containsExactlyInAnyOrder(
+                        new BkTree.Match(2, 0b0001L, 1),
+                        new BkTree.Match(3, 0b0011L, 0),
+                        new BkTree.Match(4, 0b0111L, 1));
+    }
+
+    @Test
+    void prunedSearchMatchesLinearScan() {
+        Random random = new Random(42);
+        BkTree tree = new BkTree();
+        List<Long> hashes = new ArrayList<>();
+        long base = random.nextLong();
+        for (int i = 0; i < 2000; i++) {
+            // Часть хешей близка друг к другу, как у пережатых копий одного изображения
+            long hash = i % 2 == 0 ? random.nextLong() : base ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64));
+            hashes.add(hash);
+            tree.add(hash, i);
+        }
+
+        for (int query = 0; query < 50; query++) {
+            long hash = query % 2 == 0 ? random.nextLong() : hashes.get(random.nextInt(hashes.size()));
+            for (int radius : new int[]{0, 4, 10, 20}) {
+                List<Long> expected = new ArrayList<>();
+                for (int id = 0; id < hashes.size(); id++) {
+                    if (PerceptualHasher.distance(hashes.get(id), hash) <= radius) {
+                        expected.add((long) id);
+                    }
+                }
+                assertThat(tree.search(hash, radius)).extracting(BkTree.Match::id)
+                        .containsExactlyInAnyOrderElementsOf(expected);
+            }
+        }
+    }
+
+    @Test
+    void searchVisitsChildrenOnRangeBoundaries() {
+        BkTree tree = new BkTree();
+        tree.add(0L, 1);
+        // Потомки корня на расстояниях 2 и 6 — ровно на границах [d - r, d + r] для d = 4, r = 2
+        tree.add(0b11L, 2);
+        tree.add(0b111111L, 3);
+
+        assertThat(tree.search(0b1111L, 2)).extracting(BkTree.Match::id).containsExactlyInAnyOrder(2L, 3L);
+    }
+
+    @Test
+    void keepsSeveralIdsPerHashWithoutDuplicates() {
+        BkTree tree = new BkTree();
+        tree.add(7L, 1);
+        tree.add(7L, 2);
+        tree.add(7L, 1);
+        tree.add(7L, 3);
+
+        assertThat(tree.size()).isEqualTo(3);
+        assertThat(tree.search(7L, 0)).extracting(BkTree.Match::id).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    void removeKeepsPathToDescendants() {
+        BkTree tree = new BkTree();
+        tree.add(0L, 1);
+        tree.add(0b1L, 2);
+        tree.add(0b11L, 3);
+
+        assertThat(tree.remove(0L, 1)).isTrue();
+        assertThat(tree.remove(0L, 1)).isFalse();
+        assertThat(tree.remove(0b1L, 99)).isFalse();
+        assertThat(tree.remove(0b100L, 2)).isFalse();
+
+        assertThat(tree.size()).isEqualTo(2);
+        assertThat(tree.search(0L, 2)).extracting(BkTree.Match::id).containsExactlyInAnyOrder(2L, 3L);
+
+        tree.add(0L, 4);
+        assertThat(tree.search(0L, 0)).extracting(BkTree.Match::id).containsExactly(4L);
+    }
+
+    @Test
+    void emptyTreeFindsNothing() {
+        BkTree tree = new BkTree();
+
+        assertThat(tree.search(1L, 64)).isEmpty();
+        assertThat(tree.remove(1L, 1)).isFalse();
+        assertThat(tree.size()).isZero();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageHeaderParserTests {
+
+    @Test
+    void readsJpegWrittenByImageIo() throws IOException {
+        assertThat(ImageHeaderParser.parse(encode("jpeg", 320, 200)))
+                .contains(new ImageHeader("image/jpeg", 320, 200, 8));
+    }
+
+    @Test
+    void readsPngWrittenByImageIo() throws IOException {
+        assertThat(ImageHeaderParser.parse(encode("png", 17, 640)))
+                .contains(new ImageHeader("image/png", 17, 640, 8));
+    }
+
+    @Test
+    void skipsJpegFillBytesAndMarkersWithoutData() {
+        byte[] jpeg = bytes(
+                0xFF, 0xD8,
+                // APP0 с двумя байтами данных
+                0xFF, 0xE0, 0x00, 0x04, 0x12, 0x34,
+                // Байты заполнения перед маркером
+                0xFF, 0xFF, 0xFF,
+                // RST0 и TEM без длины
+                0xD0, 0xFF, 0x01,
+                // DHT не является SOF
+                0xFF, 0xC4, 0x00, 0x03, 0x00,
+                // SOF2: точность 12 бит, высота 480, ширина 640
+                0xFF, 0xC2, 0x00, 0x11, 0x0C, 0x01, 0xE0, 0x02, 0x80);
+
+        assertThat(ImageHeaderParser.parse(jpeg)).contains(new ImageHeader("image/jpeg", 640, 480, 12));
+    }
+
+    @Test
+    void rejectsJpegWithoutFrameHeader() {
+        // Сжатые данные (SOS) начинаются раньше SOF
+        assertThat(ImageHeaderParser.parse(bytes(0xFF, 0xD8, 0xFF, 0xDA, 0x00, 0x02))).isEmpty();
+        // Конец изображения
+        assertThat(ImageHeaderParser.parse(bytes(0xFF, 0xD8, 0xFF, 0xD9))).isEmpty();
+        // Мусор вместо маркера
+        assertThat(ImageHeaderParser.parse(bytes(0xFF, 0xD8, 0x00, 0xC0))).isEmpty();
+        // Длина сегмента меньше двух байт
+        assertThat(ImageHeaderParser.parse(bytes(0xFF, 0xD8, 0xFF, 0xE1, 0x00, 0x01))).isEmpty();
+    }
+
+    @Test
+    void readsWebpLossy() {
+        ByteBuffer payload = littleEndian(10).put(bytes(0x30, 0x01, 0x00, 0x9D, 0x01, 0x2A))
+                .putShort((short) 800).putShort((short) 600);
+
+        assertThat(ImageHeaderParser.parse(webp("VP8 ", payload)))
+                .contains(new ImageHeader("image/webp", 800, 600, 8));
+    }
+
+    @Test
+    void readsWebpLossless() {
+        int bits = (1024 - 1) | ((768 - 1) << 14);
+        ByteBuffer payload = littleEndian(10).put((byte) 0x2F).putInt(bits);
+
+        assertThat(ImageHeaderParser.parse(webp("VP8L", payload)))
+                .contains(new ImageHeader("image/webp", 1024, 768, 8));
+    }
+
+    @Test
+    void readsWebpExtended() {
+        ByteBuffer payload = littleEndian(10).putInt(0);
+        putUInt24(payload, 4000 - 1);
+        putUInt24(payload, 3000 - 1);
+
+        assertThat(ImageHeaderParser.parse(webp("VP8X", payload)))
+                .contains(new ImageHeader("image/webp", 4000, 3000, 8));
+    }
+
+    @Test
+    void rejectsWebpWithBadSignatures() {
+        ByteBuffer lossy = littleEndian(10).put(bytes(0x30, 0x01, 0x00, 0x9D, 0x01, 0x2B));
+        assertThat(ImageHeaderParser.parse(webp("VP8 ", lossy))).isEmpty();
+
+        ByteBuffer lossless = littleEndian(10).put((byte) 0x2E);
+        assertThat(ImageHeaderParser.parse(webp("VP8L", lossless))).isEmpty();
+
+        assertThat(ImageHeaderParser.parse(webp("ALPH", littleEndian(10)))).isEmpty();
+    }
+
+    @Test
+    void rejectsTruncatedHeaders() throws IOException {
+        byte[] jpeg = encode("jpeg", 64, 64);
+        byte[] png = encode("png", 64, 64);
+        ByteBuffer extended = littleEndian(10).putInt(0);
+        putUInt24(extended, 99);
+        putUInt24(extended, 99);
+        byte[] webp = webp("VP8X", extended);
+
+        assertThat(ImageHeaderParser.parse(new byte[0])).isEmpty();
+        assertThat(ImageHeaderParser.parse(bytes(0xFF))).isEmpty();
+        assertThat(ImageHeaderParser.parse(Arrays.copyOf(jpeg, 20))).isEmpty();
+        assertThat(ImageHeaderParser.parse(Arrays.copyOf(png, 20))).isEmpty();
+        assertThat(ImageHeaderParser.parse(Arrays.copyOf(webp, webp.length - 1))).isEmpty();
+    }
+
+    @Test
+    void rejectsUnknownFormatsAndZeroSizes() {
+        assertThat(ImageHeaderParser.parse("GIF89a".getBytes())).isEmpty();
+        // SOF0 с нулевой шириной
+        assertThat(ImageHeaderParser.parse(bytes(
+                0xFF, 0xD8, 0xFF, 0xC0, 0x00, 0x11, 0x08, 0x00, 0x10, 0x00, 0x00))).isEmpty();
+    }
+
+    @Test
+    void readsOnlyHeaderFromStream() throws IOException {
+        // За заголовком идут данные, которые парсер читать не должен
+        byte[] png = Arrays.copyOf(encode("png", 300, 100), 100_000);
+        CountingInputStream input = new CountingInputStream(png);
+
+        assertThat(ImageHeaderParser.parse(input)).contains(new ImageHeader("image/png", 300, 100, 8));
+        assertThat(input.read).isLessThanOrEqualTo(512);
+    }
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, format, output);
+        return output.toByteArray();
+    }
+
+    private static byte[] webp(String chunk, ByteBuffer payload) {
+        ByteBuffer buffer = littleEndian(20 + payload.capacity());
+        buffer.put("RIFF".getBytes()).putInt(12 + payload.capacity()).put("WEBP".getBytes())
+                .put(chunk.getBytes()).putInt(payload.capacity()).put(payload.array());
+        return buffer.array();
+    }
+
+    private static ByteBuffer littleEndian(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putUInt24(ByteBuffer buffer, int value) {
+        buffer.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * Поток, считающий прочитанные байты
+     */
+    private static final class CountingInputStream extends InputStream {
+
+        private final InputStream delegate;
+        private int read;
+
+        private CountingInputStream(byte[] data) {
+            this.delegate = new ByteArrayInputStream(data);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = delegate.read();
+            if (value >= 0) {
+                read++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = delegate.read(buffer, offset, length);
+            if (count > 0) {
+                read += count;
+            }
+            return count;
+        }
+    }
+}
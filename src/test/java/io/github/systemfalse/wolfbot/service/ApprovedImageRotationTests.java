@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.model.ImageStatus;
+import io.github.systemfalse.wolfbot.repository.WolfImageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ApprovedImageRotationTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private ApprovedImageRotation rotation;
+    private LocalDateTime clock = NOW;
+
+    @BeforeEach
+    void setUp() {
+        WolfImageRepository repository = mock(WolfImageRepository.class);
+        when(repository.findSendStates(ImageStatus.APPROVED)).thenReturn(List.of(
+                state(1L, NOW.minusDays(1)),
+                state(2L, null),
+                state(3L, NOW.minusDays(2)),
+                state(4L, null)));
+        rotation = new ApprovedImageRotation(repository);
+        rotation.load();
+    }
+
+    @Test
+    void servesNeverSentFirstThenOldest() {
+        assertThat(drain(4)).containsExactly(2L, 4L, 3L, 1L);
+        // Каждое выбранное изображение уходит в конец очереди
+        assertThat(drain(4)).containsExactly(2L, 4L, 3L, 1L);
+    }
+
+    @Test
+    void addedImageJoinsNeverSentImages() {
+        rotation.add(5L, null);
+
+        assertThat(rotation.size()).isEqualTo(5);
+        assertThat(drain(5)).containsExactly(2L, 4L, 5L, 3L, 1L);
+    }
+
+    @Test
+    void addUpdatesLastSentOfQueuedImage() {
+        rotation.add(2L, NOW.minusDays(3));
+
+        assertThat(rotation.size()).isEqualTo(4);
+        assertThat(drain(4)).containsExactly(4L, 2L, 3L, 1L);
+    }
+
+    @Test
+    void removedImageIsNotServed() {
+        rotation.remove(2L);
+        rotation.remove(42L);
+
+        assertThat(rotation.size()).isEqualTo(3);
+        assertThat(drain(3)).containsExactly(4L, 3L, 1L);
+    }
+
+    @Test
+    void restoreReturnsImageToPreviousPlace() {
+        assertThat(rotation.next(NOW)).hasValue(2L);
+        rotation.restore(2L, null);
+
+        assertThat(rotation.next(NOW.plusSeconds(1))).hasValue(2L);
+    }
+
+    @Test
+    void restoreDoesNotResurrectRemovedImage() {
+        assertThat(rotation.next(NOW)).hasValue(2L);
+        rotation.remove(2L);
+        rotation.restore(2L, null);
+
+        assertThat(rotation.size()).isEqualTo(3);
+        assertThat(drain(3)).doesNotContain(2L);
+    }
+
+    @Test
+    void emptyRotationHasNoNext() {
+        for (long id = 1; id <= 4; id++) {
+            rotation.remove(id);
+        }
+        assertThat(rotation.next(NOW)).isEqualTo(OptionalLong.empty());
+    }
+
+    private List<Long> drain(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> {
+                    clock = clock.plusMinutes(1);
+                    return rotation.next(clock).orElseThrow();
+                })
+                .toList();
+    }
+
+    private static WolfImageRepository.ImageSendState state(Long id, LocalDateTime lastSent) {
+        return new WolfImageRepository.ImageSendState() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getLastSent() {
+                return lastSent;
+            }
+        };
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.config.ImageConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImagePayloadCacheTests {
+
+    private final ImagePayloadCache cache = new ImagePayloadCache(new ImageConfig(), new SimpleMeterRegistry());
+
+    @Test
+    void loadsOnceAndServesFromCache() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get(1, () -> data(loads, 1))).containsExactly(1);
+        assertThat(cache.get(1, () -> data(loads, 2))).containsExactly(1);
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidateRemovesCachedData() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1, () -> data(loads, 1));
+
+        cache.invalidate(1);
+
+        assertThat(cache.getEntryCount()).isZero();
+        assertThat(cache.getUsedBytes()).isZero();
+        assertThat(cache.get(1, () -> data(loads, 2))).containsExactly(2);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void loadStartedBeforeInvalidateIsNotCached() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<byte[]> staleLoad = CompletableFuture.supplyAsync(() -> cache.get(1, () -> {
+            started.countDown();
+            await(release);
+            return new byte[]{1};
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        cache.invalidate(1);
+        release.countDown();
+
+        // Вызвавший загрузку получает прочитанные данные, но в кэш они не попадают
+        assertThat(staleLoad.get(5, TimeUnit.SECONDS)).containsExactly(1);
+        assertThat(cache.getEntryCount()).isZero();
+        assertThat(cache.get(1, () -> new byte[]{2})).containsExactly(2);
+    }
+
+    @Test
+    void loadAfterInvalidateDoesNotJoinStaleLoad() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<byte[]> staleLoad = CompletableFuture.supplyAsync(() -> cache.get(1, () -> {
+            started.countDown();
+            await(release);
+            return new byte[]{1};
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        cache.invalidate(1);
+        assertThat(cache.get(1, () -> new byte[]{2})).containsExactly(2);
+
+        release.countDown();
+        assertThat(staleLoad.get(5, TimeUnit.SECONDS)).containsExactly(1);
+        assertThat(cache.get(1, () -> new byte[]{3})).containsExactly(2);
+    }
+
+    private static byte[] data(AtomicInteger loads, int value) {
+        loads.incrementAndGet();
+        return new byte[]{(byte) value};
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.model.WolfImage;
+import io.github.systemfalse.wolfbot.repository.UserRepository;
+import io.github.systemfalse.wolfbot.repository.WolfImagePayloadRepository;
+import io.github.systemfalse.wolfbot.repository.WolfImageRepository;
+import io.github.systemfalse.wolfbot.repository.WolfImageSummary;
+import io.github.systemfalse.wolfbot.storage.BlobStore;
+import io.github.systemfalse.wolfbot.storage.StagedBlob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ImageServiceTests {
+
+    private static final String KEY = "a".repeat(64);
+
+    private final WolfImageRepository wolfImageRepository = mock(WolfImageRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final List<WolfImage> saved = new ArrayList<>();
+    private ImageService imageService;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(wolfImageRepository.findFirstByContentHashAndStatusIn(eq(KEY), any())).thenAnswer(invocation -> {
+            synchronized (saved) {
+                return saved.stream().findFirst().map(ImageServiceTests::summary);
+            }
+        });
+        when(wolfImageRepository.save(any(WolfImage.class))).thenAnswer(invocation -> {
+            // Окно между поиском копии и вставкой
+            Thread.sleep(20);
+            WolfImage image = invocation.getArgument(0);
+            synchronized (saved) {
+                image.setId((long) saved.size() + 1);
+                saved.add(image);
+            }
+            return image;
+        });
+
+        imageService = new ImageService(wolfImageRepository, mock(WolfImagePayloadRepository.class), userRepository,
+                mock(BlobStore.class), mock(ImagePayloadCache.class), mock(ApprovedImageRotation.class),
+                transactionTemplate);
+    }
+
+    @Test
+    void rejectsAlreadyUploadedContent() throws Exception {
+        imageService.saveImage(new WolfImage(), 1, staged());
+
+        assertThatThrownBy(() -> imageService.saveImage(new WolfImage(), 2, staged()))
+                .isInstanceOfSatisfying(DuplicateImageException.class,
+                        e -> assertThat(e.getDuplicate().getId()).isEqualTo(1));
+        assertThat(saved).hasSize(1);
+    }
+
+    @Test
+    void concurrentUploadsOfSameContentSaveOnce() throws Exception {
+        int uploads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        try {
+            for (int i = 0; i < uploads; i++) {
+                long uploaderId = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        imageService.saveImage(new WolfImage(), uploaderId, staged());
+                        return true;
+                    } catch (DuplicateImageException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int stored = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    stored++;
+                }
+            }
+            assertThat(stored).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(saved).hasSize(1);
+    }
+
+    private static StagedBlob staged() throws Exception {
+        StagedBlob blob = mock(StagedBlob.class);
+        when(blob.key()).thenReturn(KEY);
+        when(blob.size()).thenReturn(1024L);
+        when(blob.commit()).thenReturn(KEY);
+        return blob;
+    }
+
+    private static WolfImageSummary summary(WolfImage image) {
+        WolfImageSummary summary = mock(WolfImageSummary.class);
+        when(summary.getId()).thenReturn(image.getId());
+        return summary;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.service;
+
+import io.github.systemfalse.wolfbot.config.BotConfig;
+import io.github.systemfalse.wolfbot.model.User;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCacheTests {
+
+    private final UserCache cache = new UserCache(new BotConfig());
+
+    @Test
+    void putsUserReadAtCurrentVersion() {
+        long version = cache.version(1);
+
+        assertThat(cache.put(user(1, false), version)).isTrue();
+        assertThat(cache.get(1)).isNotNull();
+        assertThat(cache.get(1).subscribed()).isFalse();
+        assertThat(cache.get(2)).isNull();
+    }
+
+    @Test
+    void staleReadDoesNotOverwriteSubscriptionChange() {
+        cache.put(user(1, false), cache.version(1));
+
+        // Загрузка из БД началась до подписки, а завершилась после нее
+        long version = cache.version(1);
+        cache.updateSubscription(1, true);
+
+        assertThat(cache.put(user(1, false), version)).isFalse();
+        assertThat(cache.get(1).subscribed()).isTrue();
+    }
+
+    @Test
+    void staleReadIsNotCachedWhenUserWasAbsent() {
+        long version = cache.version(1);
+        cache.updateSubscription(1, true);
+
+        assertThat(cache.put(user(1, false), version)).isFalse();
+        assertThat(cache.get(1)).isNull();
+
+        assertThat(cache.put(user(1, true), cache.version(1))).isTrue();
+        assertThat(cache.get(1).subscribed()).isTrue();
+    }
+
+    @Test
+    void evictRemovesUserAndRejectsStaleRead() {
+        long version = cache.version(1);
+        cache.put(user(1, false), version);
+
+        cache.evict(1);
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.put(user(1, false), version)).isFalse();
+    }
+
+    private static User user(long telegramId, boolean subscribed) {
+        return User.builder()
+                .telegramId(telegramId)
+                .username("wolf" + telegramId)
+                .subscribed(subscribed)
+                .build();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2025 SystemFalse
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.github.systemfalse.wolfbot.storage;
+
+import io.github.systemfalse.wolfbot.config.StorageConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileSystemBlobStoreTests {
+
+    private static final byte[] DATA = "wolf".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path root;
+
+    private FileSystemBlobStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StorageConfig config = new StorageConfig();
+        config.setRoot(root.toString());
+        store = new FileSystemBlobStore(config);
+    }
+
+    @Test
+    void stagesAndCommitsContentAddressedBlob() throws Exception {
+        String key;
+        try (StagedBlob staged = store.stage(new ByteArrayInputStream(DATA), DATA.length)) {
+            assertThat(staged.size()).isEqualTo(DATA.length);
+            assertThat(store.exists(staged.key())).isFalse();
+            key = staged.commit();
+        }
+
+        assertThat(key).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(DATA)));
+        assertThat(store.read(key)).isEqualTo(DATA);
+        try (InputStream input = store.open(key)) {
+            assertThat(input.readAllBytes()).isEqualTo(DATA);
+        }
+    }
+
+    @Test
+    void rejectsOversizedStream() {
+        assertThatThrownBy(() -> store.stage(new ByteArrayInputStream(DATA), DATA.length - 1))
+                .isInstanceOf(BlobTooLargeException.class);
+    }
+
+    @Test
+    void stopsReadingOversizedStreamAtLimit() throws IOException {
+        // Бесконечный поток: запись должна прекратиться сразу после превышения предела
+        AtomicLong read = new AtomicLong();
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                read.incrementAndGet();
+                return 0;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                read.addAndGet(length);
+                return length;
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        assertThatThrownBy(() -> store.stage(endless, 1024 * 1024))
+                .isInstanceOf(BlobTooLargeException.class);
+        assertThat(read.get()).isLessThanOrEqualTo(2 * 1024 * 1024);
+        assertThat(closed).isTrue();
+        try (Stream<Path> files = Files.walk(root)) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void committedBlobIsNotDeletedUntilClosed() throws IOException {
+        StagedBlob staged = store.stage(new ByteArrayInputStream(DATA), DATA.length);
+        String key = staged.commit();
+
+        assertThat(store.deleteIfUnreferenced(key, () -> true)).isFalse();
+        assertThat(store.exists(key)).isTrue();
+
+        staged.close();
+        assertThat(store.deleteIfUnreferenced(key, () -> true)).isTrue();
+        assertThat(store.exists(key)).isFalse();
+    }
+
+    @Test
+    void recommitOfExistingBlobProtectsIt() throws IOException {
+        String key;
+        try (StagedBlob first = store.stage(new ByteArrayInputStream(DATA), DATA.length)) {
+            key = first.commit();
+        }
+
+        try (StagedBlob second = store.stage(new ByteArrayInputStream(DATA), DATA.length)) {
+            second.commit();
+            assertThat(store.deleteIfUnreferenced(key, () -> true)).isFalse();
+        }
+        assertThat(store.exists(key)).isTrue();
+    }
+
+    @Test
+    void referencedBlobIsKept() throws IOException {
+        String key;
+        try (StagedBlob staged = store.stage(new ByteArrayInputStream(DATA), DATA.length)) {
+            key = staged.commit();
+        }
+
+        assertThat(store.deleteIfUnreferenced(key, () -> false)).isFalse();
+        assertThat(store.exists(key)).isTrue();
+    }
+
+    @Test
+    void concurrentPurgeNeverRemovesBlobOfCompletedUpload() throws Exception {
+        AtomicBoolean referenced = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        String key;
+        try (StagedBlob staged = store.stage(new ByteArrayInputStream(DATA), DATA.length)) {
+            key = staged.commit();
+        }
+
+        // Очистка по сроку хранения постоянно пытается удалить блоб, на который нет ссылок
+        Thread purger = new Thread(() -> {
+            while (running.get()) {
+                try {
+                    store.deleteIfUnreferenced(key, () -> !referenced.get());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        purger.start();
+        try {
+            for (int i = 0; i < 500; i++) {
+                // Повторная загрузка того же содержимого: блоб, затем ссылка в БД
+                try (StagedBlob staged = store.stage(new ByteArrayInputStream(DATA), DATA.length)) {
+                    staged.commit();
+                    referenced.set(true);
+                }
+                assertThat(store.exists(key)).isTrue();
+                // Строку снова очистили, блоб можно удалять
+                referenced.set(false);
+            }
+        } finally {
+            running.set(false);
+            purger.join();
+        }
+    }
+}